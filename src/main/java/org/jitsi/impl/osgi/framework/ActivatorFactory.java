@@ -0,0 +1,142 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import java.lang.invoke.*;
+import java.util.function.*;
+import org.osgi.framework.*;
+
+/**
+ * Creates the {@link BundleActivator} instances of a bundle, either from a
+ * supplier registered by the embedding code or from the public no-argument
+ * constructor of an activator class.
+ */
+final class ActivatorFactory
+{
+    /**
+     * The constructors of activator classes, looked up once per class and
+     * shared by all bundles and restarts.
+     */
+    private static final ClassValue<MethodHandle> constructors
+        = new ClassValue<>()
+    {
+        @Override
+        protected MethodHandle computeValue(Class<?> type)
+        {
+            try
+            {
+                return MethodHandles.publicLookup()
+                    .findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(BundleActivator.class));
+            }
+            catch (NoSuchMethodException | IllegalAccessException e)
+            {
+                throw new IllegalArgumentException(type.getName()
+                    + " has no public no-argument constructor", e);
+            }
+        }
+    };
+
+    private final String name;
+
+    private final Supplier<? extends BundleActivator> supplier;
+
+    private ActivatorFactory(
+        String name,
+        Supplier<? extends BundleActivator> supplier)
+    {
+        this.name = name;
+        this.supplier = supplier;
+    }
+
+    /**
+     * Creates a factory invoking the public no-argument constructor of an
+     * activator class through a cached method handle.
+     *
+     * @param activatorClass the activator class.
+     * @return the factory.
+     * @throws IllegalArgumentException if the class has no accessible
+     * no-argument constructor.
+     */
+    static ActivatorFactory forClass(
+        Class<? extends BundleActivator> activatorClass)
+    {
+        var constructor = getConstructor(activatorClass);
+        return new ActivatorFactory(activatorClass.getName(), () ->
+        {
+            try
+            {
+                return (BundleActivator) constructor.invokeExact();
+            }
+            catch (RuntimeException | Error e)
+            {
+                throw e;
+            }
+            catch (Throwable t)
+            {
+                throw new IllegalStateException(
+                    "Could not create " + activatorClass.getName(), t);
+            }
+        });
+    }
+
+    /**
+     * Gets the cached constructor of an activator class.
+     *
+     * @param activatorClass the activator class.
+     * @return the method handle, the same for every call with the class.
+     * @throws IllegalArgumentException if the class has no accessible
+     * no-argument constructor.
+     */
+    static MethodHandle getConstructor(
+        Class<? extends BundleActivator> activatorClass)
+    {
+        return constructors.get(activatorClass);
+    }
+
+    /**
+     * Creates a factory calling a supplier.
+     *
+     * @param supplier the supplier of activator instances.
+     * @return the factory.
+     */
+    static ActivatorFactory forSupplier(
+        Supplier<? extends BundleActivator> supplier)
+    {
+        return new ActivatorFactory(null, supplier);
+    }
+
+    /**
+     * Gets the name of the activator class, if known before an instance is
+     * created.
+     *
+     * @return the class name, or {@code null} for suppliers.
+     */
+    String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Creates a new activator instance.
+     *
+     * @return the activator.
+     */
+    BundleActivator create()
+    {
+        return supplier.get();
+    }
+}
@@ -20,7 +20,11 @@ import static java.lang.StackWalker.Option.*;
 import java.io.*;
 import java.lang.StackWalker.*;
 import java.net.*;
+import java.nio.file.*;
+import java.security.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.jar.*;
 import java.util.logging.*;
 import java.util.stream.*;
@@ -29,6 +33,7 @@ import org.apache.commons.io.*;
 import org.apache.commons.lang3.*;
 import org.apache.commons.text.StringTokenizer;
 import org.apache.commons.text.matcher.*;
+import org.jitsi.impl.osgi.framework.storage.*;
 import org.osgi.framework.*;
 
 public class BundleClassLoader
@@ -36,18 +41,187 @@ public class BundleClassLoader
 {
     private static final Logger LOGGER = Logger.getLogger(BundleClassLoader.class.getName());
 
+    /**
+     * The maximum number of class names in {@link #parentClasses}.
+     */
+    private static final int MAX_PARENT_CLASSES = 4096;
+
+    /**
+     * The executor of class loaders that are not given one, with daemon
+     * threads that are created on demand.
+     */
+    private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+
+    static
+    {
+        registerAsParallelCapable();
+    }
+
     private final ClassLoader parent;
 
-    private final Map<URI, List<File>> nativeLibraries = new HashMap<>();
+    private final FrameworkStorage storage;
+
+    /**
+     * The executor extracting native libraries and cleaning up their cache
+     * in the background.
+     */
+    private final Executor executor;
+
+    /**
+     * The native libraries declared for this platform by each code source
+     * that called {@link #findLibrary(String)}, including those declaring
+     * none.
+     */
+    private final Map<URI, NativeCode> nativeLibraries
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The run directory of the {@link NativeLibraryCache} the native
+     * libraries are linked into. Guarded by {@link #nativeLibraries}.
+     */
+    private Path nativeLibDir;
+
+    /**
+     * The cache {@link #nativeLibDir} belongs to. Guarded by
+     * {@link #nativeLibraries}.
+     */
+    private NativeLibraryCache nativeLibCache;
+
+    /**
+     * Whether {@link #close()} was called, after which no libraries are
+     * extracted anymore. Guarded by {@link #nativeLibraries}.
+     */
+    private boolean nativeLibsClosed;
 
-    private File nativeLibTempDir;
+    private final LongAdder definedClassCount = new LongAdder();
+
+    private final LongAdder classDefinitionTime = new LongAdder();
+
+    private volatile Runnable lazyActivationTrigger;
+
+    /**
+     * The class loads of each thread with this class loader, nested while
+     * a class being defined loads its superclass or interfaces.
+     */
+    private final ThreadLocal<Load> loads = ThreadLocal.withInitial(Load::new);
+
+    /**
+     * The names of the classes defined by this class loader since
+     * {@link #startRecording()}, in the order of their definition.
+     */
+    private volatile Queue<String> recordedClasses;
+
+    /**
+     * The names of the classes that are not on the class path, and are
+     * therefore loaded by the parent or not at all. Lookups take no lock, the
+     * set is cleared when it exceeds {@link #MAX_PARENT_CLASSES}.
+     */
+    private final Set<String> parentClasses = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether this class loader delegates all class and resource loading to a
+     * shared class loader.
+     */
+    private final boolean delegating;
+
+    /**
+     * The index of the class path to find classes and resources with,
+     * {@code null} if {@link #delegating}. Acquired by this class loader and
+     * released when it is closed.
+     */
+    private final ClassPathIndex classPath;
+
+    /**
+     * Whether {@link #classPath} was released, at most once however often
+     * this class loader is closed.
+     */
+    private final AtomicBoolean classPathReleased = new AtomicBoolean();
 
     public BundleClassLoader(ClassLoader parent)
+    {
+        this(parent, null);
+    }
+
+    /**
+     * Creates a class loader over the whole class path.
+     *
+     * @param parent the class loader to delegate to for classes that are not
+     * on the class path.
+     * @param storage the framework storage area caching the native library
+     * selection of each code source, or {@code null}.
+     */
+    public BundleClassLoader(ClassLoader parent, FrameworkStorage storage)
+    {
+        this(new ClassPathIndex(getClassPathUrls()), parent, storage);
+    }
+
+    /**
+     * Creates a class loader over a class path whose index may be shared
+     * with other class loaders. The index is closed when the last of them is
+     * closed.
+     *
+     * @param classPath the index of the class path.
+     * @param parent the class loader to delegate to for classes that are not
+     * on the class path.
+     * @param storage the framework storage area caching the native library
+     * selection of each code source, or {@code null}.
+     */
+    public BundleClassLoader(
+        ClassPathIndex classPath,
+        ClassLoader parent,
+        FrameworkStorage storage)
+    {
+        this(classPath, parent, storage, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Creates a class loader over a class path whose index may be shared
+     * with other class loaders, with the executor of its framework.
+     *
+     * @param classPath the index of the class path.
+     * @param parent the class loader to delegate to for classes that are not
+     * on the class path.
+     * @param storage the framework storage area caching the native library
+     * selection of each code source, or {@code null}.
+     * @param executor the executor extracting native libraries and cleaning
+     * up their cache in the background.
+     */
+    public BundleClassLoader(
+        ClassPathIndex classPath,
+        ClassLoader parent,
+        FrameworkStorage storage,
+        Executor executor)
     {
         // Do not set a parent classloader to break the parent-first paradigm.
         // We need our classloader first to be able to intercept the findLibrary
         // call even if a class would actually be available in the parent.
-        super(Stream
+        super(classPath.getUrls(), null);
+        this.parent = parent;
+        this.storage = storage;
+        this.executor = executor;
+        this.delegating = false;
+        this.classPath = classPath.acquire();
+    }
+
+    private static Executor createDefaultExecutor()
+    {
+        var threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(r ->
+        {
+            var t = new Thread(r, "osgi-native-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Gets the URLs of the entries of {@code java.class.path}.
+     *
+     * @return a new array of the URLs.
+     */
+    public static URL[] getClassPathUrls()
+    {
+        return Stream
             .of(System.getProperty("java.class.path").split(System.getProperty("path.separator")))
             .map(
                 cp -> {
@@ -59,28 +233,397 @@ public class BundleClassLoader
                     {
                         throw new RuntimeException(e);
                     }
-                }).toArray(URL[]::new), null);
-        this.parent = parent;
+                }).toArray(URL[]::new);
+    }
+
+    /**
+     * Creates a class loader for a bundle that defines no classes itself, but
+     * delegates everything to a class loader shared by all bundles of a
+     * framework. Native libraries are still resolved per code source of the
+     * calling class, by the shared class loader that defined it.
+     *
+     * @param shared the class loader over the whole class path shared by the
+     * bundles.
+     */
+    public BundleClassLoader(BundleClassLoader shared)
+    {
+        super(new URL[0], shared);
+        this.parent = shared;
+        this.storage = shared.storage;
+        this.executor = shared.executor;
+        this.delegating = true;
+        this.classPath = null;
     }
 
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException
     {
-        synchronized (getClassLoadingLock(name))
+        if (delegating)
         {
-            try
+            return parent.loadClass(name);
+        }
+
+        // Everything java.* is definitely not from our jars (or build
+        // directories) on the classpath, so go to the parent directly, like
+        // for the classes already known not to be on the classpath.
+        if (name.startsWith("java.") || isParentClass(name))
+        {
+            return parent.loadClass(name);
+        }
+
+        var load = enterLoad();
+        try
+        {
+            synchronized (getClassLoadingLock(name))
+            {
+                var c = findLoadedClass(name);
+                if (c != null)
+                {
+                    return c;
+                }
+
+                // A single lookup in the index both decides whether the class
+                // is on the classpath and finds the entry to define it from,
+                // instead of letting a miss throw a ClassNotFoundException.
+                var resource = classPath.getResource(getResourceName(name));
+                if (resource != null)
+                {
+                    try
+                    {
+                        c = defineClass(name, resource);
+                        load.defined = true;
+                        return c;
+                    }
+                    catch (ClassNotFoundException cnf)
+                    {
+                        // removed since it was indexed, try delegating to the
+                        // parent
+                    }
+                }
+
+                // an approximate bound, the set is only a shortcut
+                if (parentClasses.size() >= MAX_PARENT_CLASSES)
+                {
+                    parentClasses.clear();
+                }
+                parentClasses.add(name);
+            }
+        }
+        finally
+        {
+            exitLoad(load);
+        }
+
+        return parent.loadClass(name);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException
+    {
+        // not through the superclass, which calls findClass with the class
+        // loading lock held
+        var c = loadClass(name);
+        if (resolve)
+        {
+            resolveClass(c);
+        }
+        return c;
+    }
+
+    private boolean isParentClass(String name)
+    {
+        return parentClasses.contains(name);
+    }
+
+    private static String getResourceName(String className)
+    {
+        return className.replace('.', '/') + ".class";
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException
+    {
+        var resource = classPath == null
+            ? null
+            : classPath.getResource(getResourceName(name));
+        if (resource == null)
+        {
+            throw new ClassNotFoundException(name);
+        }
+
+        var load = enterLoad();
+        try
+        {
+            var c = defineClass(name, resource);
+            load.defined = true;
+            return c;
+        }
+        finally
+        {
+            exitLoad(load);
+        }
+    }
+
+    /**
+     * Notes that the current thread loads a class with this class loader.
+     *
+     * @return the class loads of the current thread.
+     */
+    private Load enterLoad()
+    {
+        var load = loads.get();
+        load.depth++;
+        return load;
+    }
+
+    /**
+     * Notes that the current thread finished loading a class, and runs the
+     * lazy activation trigger if it was the outermost load and defined a
+     * class, the class loading locks it took being released by then.
+     *
+     * @param load the class loads of the current thread.
+     */
+    private void exitLoad(Load load)
+    {
+        if (--load.depth == 0 && load.defined)
+        {
+            load.defined = false;
+            runLazyActivationTrigger();
+        }
+    }
+
+    /**
+     * Defines a class from the class path resource found for it, and accounts
+     * for the definition.
+     *
+     * @param name the binary name of the class.
+     * @param resource the class file.
+     * @return the class.
+     * @throws ClassNotFoundException if the class file cannot be read.
+     */
+    private Class<?> defineClass(String name, ClassPathIndex.Resource resource)
+        throws ClassNotFoundException
+    {
+        long start = System.nanoTime();
+        var c = defineClassFromResource(name, resource);
+        classDefinitionTime.add(System.nanoTime() - start);
+        definedClassCount.increment();
+
+        var recorded = recordedClasses;
+        if (recorded != null)
+        {
+            recorded.add(name);
+        }
+
+        return c;
+    }
+
+    /**
+     * Runs the lazy activation trigger after a class was defined. The trigger
+     * takes the transition lock of the bundle, while an activator holding
+     * that lock may wait for a class loading lock of this class loader, so
+     * it is never run with a class loading lock held. This includes the lock
+     * of a class whose definition loaded the defined class, e.g. as its
+     * superclass, hence it runs when the outermost load of the thread exits.
+     */
+    private void runLazyActivationTrigger()
+    {
+        var trigger = lazyActivationTrigger;
+        if (trigger != null)
+        {
+            trigger.run();
+        }
+    }
+
+    /**
+     * Defines a class and its package from the class path entry that owns
+     * the package, like {@link URLClassLoader} would.
+     *
+     * @param name the binary name of the class.
+     * @param resource the class file.
+     * @return the class.
+     * @throws ClassNotFoundException if the class file cannot be read.
+     */
+    private Class<?> defineClassFromResource(
+        String name,
+        ClassPathIndex.Resource resource)
+        throws ClassNotFoundException
+    {
+        try
+        {
+            var dot = name.lastIndexOf('.');
+            if (dot > 0)
+            {
+                definePackage(name.substring(0, dot), resource);
+            }
+
+            // straight from the mapped or inflated buffer, mapped jars are
+            // never signed
+            var buffer = resource.getByteBuffer();
+            if (buffer != null)
+            {
+                return defineClass(name, buffer,
+                    new CodeSource(resource.getCodeSourceUrl(),
+                        (CodeSigner[]) null));
+            }
+
+            var bytes = resource.getBytes();
+            return defineClass(name, bytes, 0, bytes.length,
+                new CodeSource(resource.getCodeSourceUrl(),
+                    resource.getCodeSigners()));
+        }
+        catch (IOException e)
+        {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+
+    private void definePackage(String name, ClassPathIndex.Resource resource)
+        throws IOException
+    {
+        if (getDefinedPackage(name) != null)
+        {
+            return;
+        }
+
+        try
+        {
+            var manifest = resource.getManifest();
+            if (manifest == null)
+            {
+                definePackage(name, null, null, null, null, null, null, null);
+            }
+            else
+            {
+                definePackage(name, manifest, resource.getCodeSourceUrl());
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            // defined concurrently for another class of the package
+            if (getDefinedPackage(name) == null)
+            {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public URL findResource(String name)
+    {
+        if (classPath == null)
+        {
+            return null;
+        }
+
+        var resource = classPath.getResource(name);
+        return resource == null ? null : resource.getUrl();
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name)
+    {
+        if (classPath == null)
+        {
+            return Collections.emptyEnumeration();
+        }
+
+        var urls = new ArrayList<URL>(1);
+        for (var resource : classPath.getResources(name))
+        {
+            urls.add(resource.getUrl());
+        }
+        return Collections.enumeration(urls);
+    }
+
+    /**
+     * Sets the action to run when the next class is defined by this class
+     * loader, used to activate a bundle with the lazy activation policy. It
+     * runs after the class loading lock of the class is released.
+     *
+     * @param lazyActivationTrigger the action, or {@code null} to remove it.
+     */
+    public void setLazyActivationTrigger(Runnable lazyActivationTrigger)
+    {
+        this.lazyActivationTrigger = lazyActivationTrigger;
+    }
+
+    /**
+     * Starts recording the names of the classes this class loader defines.
+     */
+    public void startRecording()
+    {
+        recordedClasses = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Stops recording the names of the defined classes.
+     *
+     * @return the names of the classes defined since {@link #startRecording()}
+     * in the order of their definition, or {@code null} if not recording.
+     */
+    public List<String> stopRecording()
+    {
+        var recorded = recordedClasses;
+        recordedClasses = null;
+        return recorded == null ? null : new ArrayList<>(recorded);
+    }
+
+    /**
+     * Gets the number of classes this class loader defined.
+     *
+     * @return the number of defined classes.
+     */
+    public long getDefinedClassCount()
+    {
+        return definedClassCount.sum();
+    }
+
+    /**
+     * Gets the time spent finding and defining classes in this class loader.
+     *
+     * @return the accumulated time in nanoseconds.
+     */
+    public long getClassDefinitionTime()
+    {
+        return classDefinitionTime.sum();
+    }
+
+    /**
+     * Releases the class path of this class loader and deletes its links to the
+     * cached native libraries. Libraries that are still loaded are only
+     * unloaded when this class loader is garbage collected, so the deletion
+     * may fail on platforms that lock loaded libraries, and is then left to
+     * the cleanup of the cache by a later process.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        lazyActivationTrigger = null;
+        try
+        {
+            super.close();
+            if (classPath != null && classPathReleased.compareAndSet(false, true))
             {
-                // Everything java.* is definitely not from our jars (or
-                // build directories) on the classpath, so try the parent
-                // first. If not found on the classpath, try delegating to
-                // the parent anyway.
-                return name.startsWith("java.")
-                    ? parent.loadClass(name)
-                    : super.loadClass(name);
+                classPath.release();
             }
-            catch (ClassNotFoundException cnf)
+        }
+        finally
+        {
+            synchronized (nativeLibraries)
             {
-                return parent.loadClass(name);
+                nativeLibraries.clear();
+                nativeLibsClosed = true;
+                if (nativeLibDir != null)
+                {
+                    if (!FileUtils.deleteQuietly(nativeLibDir.toFile()))
+                    {
+                        LOGGER.log(Level.FINE, "Could not delete native libs in {0}",
+                            nativeLibDir);
+                    }
+                    nativeLibDir = null;
+                }
             }
         }
     }
@@ -111,118 +654,345 @@ public class BundleClassLoader
             throw new RuntimeException(e);
         }
 
-        var libs = nativeLibraries.computeIfAbsent(callerUrl, key -> {
-            var paths = loadNativeLibraries(caller);
-            var found = false;
-            for (var path : paths)
+        // the declared libraries are selected once per code source, a code
+        // source declaring none is remembered as well
+        var nativeCode = nativeLibraries.computeIfAbsent(callerUrl,
+            key -> new NativeCode(loadNativeLibraries(caller)));
+        var mappedName = System.mapLibraryName(libname);
+        if (!nativeCode.paths.containsKey(mappedName))
+        {
+            return null;
+        }
+
+        var lib = nativeCode.getLibrary(caller, mappedName);
+        return lib == null ? null : lib.toAbsolutePath().toString();
+    }
+
+    /**
+     * Gets the directory to link the native libraries into, creating it on
+     * first use. The libraries are cached in the storage area of the
+     * framework if there is one, else in a directory of the current user in
+     * the temporary directory.
+     *
+     * @return the directory, or {@code null} if it could not be created or
+     * this class loader is closed.
+     */
+    private Path getNativeLibDir()
+    {
+        synchronized (nativeLibraries)
+        {
+            if (nativeLibsClosed)
             {
-                if (System.mapLibraryName(libname).equals(new File(path).getName()))
+                return null;
+            }
+
+            if (nativeLibDir == null)
+            {
+                try
                 {
-                    found = true;
-                    break;
+                    var cacheDir = storage == null
+                        ? NativeLibraryCache.getDefaultDirectory()
+                        : new File(storage.getRoot(), "native").toPath();
+                    if (cacheDir == null)
+                    {
+                        // not persistent, but still extracted only once
+                        cacheDir = Files.createTempDirectory("jitsi-native-");
+                    }
+                    nativeLibCache = NativeLibraryCache.forDirectory(cacheDir,
+                        executor);
+                    nativeLibDir = nativeLibCache.createRunDirectory();
+                }
+                catch (IOException e)
+                {
+                    LOGGER.log(Level.SEVERE, "Could not create directory for native libs", e);
+                    return null;
                 }
             }
 
-            if (!found)
+            return nativeLibDir;
+        }
+    }
+
+    /**
+     * The class loads of a thread with this class loader.
+     */
+    private static class Load
+    {
+        /**
+         * The number of nested class loads in progress.
+         */
+        private int depth;
+
+        /**
+         * Whether one of the nested class loads defined a class.
+         */
+        private boolean defined;
+    }
+
+    /**
+     * The native libraries a code source declares for this platform.
+     */
+    private class NativeCode
+    {
+        /**
+         * The paths of the libraries in the code source by their file name.
+         */
+        private final Map<String, String> paths = new LinkedHashMap<>();
+
+        /**
+         * The libraries that are or are being extracted, by their file name.
+         * A failed extraction is removed, to be retried on the next request.
+         */
+        private final Map<String, CompletableFuture<Path>> extracted
+            = new ConcurrentHashMap<>();
+
+        /**
+         * Whether the libraries that were not requested are extracted in the
+         * background.
+         */
+        private final AtomicBoolean prefetching = new AtomicBoolean();
+
+        /**
+         * The file names of the dependencies that were loaded.
+         */
+        private final Set<String> loadedDependencies
+            = ConcurrentHashMap.newKeySet();
+
+        private NativeCode(List<String> paths)
+        {
+            for (String path : paths)
+            {
+                this.paths.putIfAbsent(new File(path).getName(), path);
+            }
+        }
+
+        /**
+         * Extracts a library together with the libraries of this code source
+         * it depends on, and then the remaining libraries in the background.
+         * The dependencies of an ELF library are the libraries whose file
+         * names match its {@code DT_NEEDED} entries. They are loaded before
+         * it by their absolute paths, those without dependencies first, so
+         * that the dynamic linker finds them already loaded by their
+         * {@code SONAME} and the library needs no {@code RUNPATH} of
+         * {@code $ORIGIN}. A library of another format may depend on all
+         * others, which are only extracted next to it, where the search rules
+         * of the platform must find them, e.g. with {@code @loader_path}.
+         * <p>
+         * The dependencies are loaded by the class loader of the framework,
+         * from hard links in a subdirectory, so that a bundle can still load
+         * one of them itself. A {@code JNI_OnLoad} of a dependency is called
+         * in the context of the framework.
+         *
+         * @param caller the class loading the library.
+         * @param name the file name of the library.
+         * @return the extracted library, or {@code null} if it could not be
+         * extracted.
+         */
+        private Path getLibrary(Class<?> caller, String name)
+        {
+            var lib = extract(caller, name);
+            if (lib == null)
             {
                 return null;
             }
 
-            if (nativeLibTempDir == null)
+            var dependencies = new LinkedHashMap<String, Path>();
+            var visited = new HashSet<String>();
+            visited.add(name);
+            if (!addDependencies(caller, lib, visited, dependencies))
             {
-                nativeLibTempDir = new File(SystemUtils.getJavaIoTmpDir(), "jitsi-native-" + UUID.randomUUID());
-                if (!nativeLibTempDir.mkdirs())
+                // not ELF, all other libraries are extracted next to it
+                for (String other : paths.keySet())
                 {
-                    LOGGER.log(Level.SEVERE, "Could not create temp dir {0} for native libs",
-                        nativeLibTempDir.getAbsolutePath());
-                    nativeLibTempDir = null;
-                    return null;
+                    if (visited.add(other))
+                    {
+                        extract(caller, other);
+                    }
                 }
             }
 
-            // extract all defined dlls, they might depend on each other
-            var libPaths = new ArrayList<File>(paths.size());
-            for (var path : paths)
+            for (var dependency : dependencies.entrySet())
+            {
+                loadDependency(caller, dependency.getKey(),
+                    dependency.getValue());
+            }
+
+            if (prefetching.compareAndSet(false, true))
             {
-                var libUrl = caller.getResource("/" + path);
-                if (libUrl != null)
+                try
                 {
-                    try
-                    {
-                        var dest = new File(nativeLibTempDir, new File(path).getName());
-                        IOUtils.copy(libUrl, dest);
-                        libPaths.add(dest);
-                    }
-                    catch (IOException e)
-                    {
-                        LOGGER.log(Level.SEVERE, "Could not extract lib", e);
-                    }
+                    executor.execute(() ->
+                        paths.keySet().forEach(n -> extract(caller, n)));
+                }
+                catch (RejectedExecutionException e)
+                {
+                    // extracted on demand instead
+                    LOGGER.log(Level.FINE, "Not prefetching native libs", e);
                 }
             }
 
-            return libPaths;
-        });
+            return lib;
+        }
 
-        if (libs != null)
+        /**
+         * Extracts the dependencies of an ELF library that this code source
+         * declares, recursively.
+         *
+         * @param caller the class loading the library.
+         * @param lib the extracted library.
+         * @param visited the file names of the libraries already visited.
+         * @param dependencies receives the extracted dependencies by file
+         * name, each after its own dependencies.
+         * @return {@code false} if the library is not an ELF file.
+         */
+        private boolean addDependencies(
+            Class<?> caller,
+            Path lib,
+            Set<String> visited,
+            Map<String, Path> dependencies)
         {
-            for (var lib : libs)
+            List<String> needed;
+            try
+            {
+                needed = ElfFile.readNeeded(lib);
+            }
+            catch (IOException e)
             {
-                if (System.mapLibraryName(libname).equals(lib.getName()))
+                LOGGER.log(Level.WARNING, "Could not read dependencies of " + lib, e);
+                needed = Collections.emptyList();
+            }
+
+            if (needed == null)
+            {
+                return false;
+            }
+
+            for (String dependency : needed)
+            {
+                if (paths.containsKey(dependency) && visited.add(dependency))
                 {
-                    return lib.getAbsolutePath();
+                    var extractedDependency = extract(caller, dependency);
+                    if (extractedDependency != null)
+                    {
+                        addDependencies(caller, extractedDependency, visited,
+                            dependencies);
+                        dependencies.put(dependency, extractedDependency);
+                    }
                 }
             }
+
+            return true;
         }
 
-        return null;
-    }
+        /**
+         * Loads a dependency of a library from a hard link in the
+         * {@code deps} subdirectory of the run directory. A failure is only
+         * logged, the dynamic linker may still find the dependency itself.
+         */
+        private void loadDependency(Class<?> caller, String name, Path lib)
+        {
+            if (!loadedDependencies.add(name))
+            {
+                return;
+            }
 
-    private List<String> loadNativeLibraries(Class<?> caller)
-    {
-        URL mfResource = null;
-        try
+            try
+            {
+                var deps = lib.resolveSibling("deps");
+                Files.createDirectories(deps);
+                var link = nativeLibCache.link(
+                    caller.getResource("/" + paths.get(name)), deps, name);
+                System.load(link.toAbsolutePath().toString());
+            }
+            catch (IOException | UnsatisfiedLinkError e)
+            {
+                LOGGER.log(Level.FINE, "Could not load dependency " + lib, e);
+            }
+        }
+
+        private Path extract(Class<?> caller, String name)
         {
-            var classSource = caller.getProtectionDomain().getCodeSource().getLocation();
-            var resources = caller.getClassLoader().getResources("META-INF/MANIFEST.MF").asIterator();
-            while (resources.hasNext())
+            var future = new CompletableFuture<Path>();
+            var existing = extracted.putIfAbsent(name, future);
+            if (existing != null)
             {
-                var res = resources.next();
-                var resPath = res.toString();
-                if (resPath.startsWith("jar:"))
-                {
-                    resPath = resPath.substring(4);
-                }
-                var resPos = resPath.indexOf('!');
-                if (resPos > -1)
+                return existing.join();
+            }
+
+            Path lib = null;
+            try
+            {
+                var dir = getNativeLibDir();
+                var libUrl = caller.getResource("/" + paths.get(name));
+                if (dir != null && libUrl != null)
                 {
-                    resPath = resPath.substring(0, resPos);
+                    lib = nativeLibCache.link(libUrl, dir, name);
                 }
-                if (resPath.equals(classSource.toString()))
+            }
+            catch (IOException e)
+            {
+                LOGGER.log(Level.SEVERE, "Could not extract lib " + name, e);
+            }
+            finally
+            {
+                if (lib == null)
                 {
-                    mfResource = res;
+                    extracted.remove(name, future);
                 }
+                future.complete(lib);
             }
+
+            return lib;
         }
-        catch (IOException e)
+    }
+
+    private List<String> loadNativeLibraries(Class<?> caller)
+    {
+        var classSource = caller.getProtectionDomain().getCodeSource()
+            .getLocation();
+        if (storage == null)
         {
-            throw new RuntimeException(e);
+            return readNativeLibraries(caller, classSource);
+        }
+
+        var metadata = storage.getMetadata(classSource.toString());
+        var paths = metadata.getNativeLibrariesForPlatform();
+        if (paths == null)
+        {
+            paths = readNativeLibraries(caller, classSource);
+            metadata.setNativeLibrariesForPlatform(paths);
+            storage.updated();
         }
 
-        if (mfResource == null)
+        return paths;
+    }
+
+    private List<String> readNativeLibraries(Class<?> caller, URL classSource)
+    {
+        // the manifest of the code source itself, instead of enumerating the
+        // manifests of all code sources of the class loader
+        URL mfResource;
+        try
         {
+            mfResource = classSource.getPath().endsWith("/")
+                ? new URL(classSource, "META-INF/MANIFEST.MF")
+                : new URL("jar:" + classSource + "!/META-INF/MANIFEST.MF");
+        }
+        catch (MalformedURLException e)
+        {
+            LOGGER.log(Level.WARNING, "Invalid code source " + classSource, e);
             return Collections.emptyList();
         }
 
         try (var s = mfResource.openStream())
         {
-            if (s == null)
+            var mf = new Manifest(s);
+            var nativeCodeNames = mf.getMainAttributes().getValue(Constants.BUNDLE_NATIVECODE);
+            if (nativeCodeNames == null)
             {
                 return Collections.emptyList();
             }
 
-            var mf = new Manifest(s);
-            var nativeCodeNames = mf.getMainAttributes().getValue(Constants.BUNDLE_NATIVECODE);
-
             // split by comma -> contains multiple libs with filters
             var spaceIgnore = StringMatcherFactory.INSTANCE.charSetMatcher('\r', '\n', ' ');
             var filterSt = new StringTokenizer(nativeCodeNames, ',', '"');
@@ -285,6 +1055,10 @@ public class BundleClassLoader
 
             return paths;
         }
+        catch (FileNotFoundException e)
+        {
+            // no manifest
+        }
         catch (IOException e)
         {
             LOGGER.log(Level.SEVERE, "Failed to extract manifest", e);
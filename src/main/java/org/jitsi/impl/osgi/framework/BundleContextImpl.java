@@ -47,7 +47,7 @@ public class BundleContextImpl
     @Override
     public void addFrameworkListener(FrameworkListener listener)
     {
-        framework.addFrameworkListener(listener);
+        framework.addFrameworkListener(getBundle(), listener);
     }
 
     @Override
@@ -95,7 +95,7 @@ public class BundleContextImpl
     @Override
     public Bundle getBundle(String location)
     {
-        throw new UnsupportedOperationException();
+        return framework.getBundle(location);
     }
 
     @Override
@@ -107,7 +107,7 @@ public class BundleContextImpl
     @Override
     public File getDataFile(String filename)
     {
-        throw new UnsupportedOperationException();
+        return bundle.getDataFile(filename);
     }
 
     @Override
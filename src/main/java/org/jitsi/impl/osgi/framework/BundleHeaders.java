@@ -0,0 +1,259 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.logging.*;
+import org.osgi.framework.*;
+
+/**
+ * The immutable manifest headers of a bundle. Header names and short values,
+ * which repeat across bundles, e.g. {@code Bundle-ManifestVersion: 2}, are
+ * interned. The {@code Bundle-Version} is parsed once, and the headers
+ * localized with the {@code Bundle-Localization} resources are cached per
+ * locale.
+ */
+class BundleHeaders
+{
+    private static final Logger logger
+        = Logger.getLogger(BundleHeaders.class.getName());
+
+    /**
+     * The maximum length of a header value that is interned. Longer values,
+     * e.g. {@code Import-Package}, are mostly unique to a bundle.
+     */
+    private static final int MAX_INTERNED_VALUE_LENGTH = 64;
+
+    private final Map<String, String> headers;
+
+    private final Dictionary<String, String> dictionary;
+
+    private final Version version;
+
+    /**
+     * Whether any header value is a {@code %key} of the localization
+     * resources.
+     */
+    private final boolean localizable;
+
+    private final Map<String, Dictionary<String, String>> localized
+        = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the headers of a bundle.
+     *
+     * @param manifestHeaders the main attributes of the manifest.
+     * @param location the location of the bundle, added as the
+     * {@code Location} header.
+     */
+    BundleHeaders(Map<String, String> manifestHeaders, String location)
+    {
+        var headers = new HashMap<String, String>(
+            (manifestHeaders.size() + 1) * 4 / 3 + 1);
+        var localizable = false;
+        for (var e : manifestHeaders.entrySet())
+        {
+            var value = e.getValue();
+            headers.put(e.getKey().intern(),
+                value.length() <= MAX_INTERNED_VALUE_LENGTH
+                    ? value.intern()
+                    : value);
+            localizable |= value.startsWith("%");
+        }
+        headers.put("Location", location);
+
+        this.headers = Collections.unmodifiableMap(headers);
+        this.dictionary = new ImmutableDictionary(this.headers);
+        this.localizable = localizable;
+        this.version = parseVersion(headers.get(Constants.BUNDLE_VERSION),
+            location);
+    }
+
+    private static Version parseVersion(String version, String location)
+    {
+        try
+        {
+            return Version.parseVersion(version);
+        }
+        catch (IllegalArgumentException e)
+        {
+            logger.warning("Invalid " + Constants.BUNDLE_VERSION + " "
+                + version + " of " + location);
+            return Version.emptyVersion;
+        }
+    }
+
+    /**
+     * Gets the raw value of a header.
+     *
+     * @param name the name of the header.
+     * @return the value, or {@code null} if the header is not present.
+     */
+    String get(String name)
+    {
+        return headers.get(name);
+    }
+
+    /**
+     * Gets the parsed {@code Bundle-Version}.
+     *
+     * @return the version, {@link Version#emptyVersion} if the header is
+     * missing or invalid.
+     */
+    Version getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Gets the headers localized for a locale, as specified by
+     * {@link Bundle#getHeaders(String)}.
+     *
+     * @param locale the locale, {@code null} for the default locale or the
+     * empty string for the raw headers.
+     * @param entries the entries of the bundle to find the localization
+     * resources in, only used for a locale not localized yet.
+     * @return the immutable headers.
+     */
+    Dictionary<String, String> getLocalized(
+        String locale,
+        Supplier<EntryIndex> entries)
+    {
+        if (!localizable || "".equals(locale))
+        {
+            return dictionary;
+        }
+
+        return localized.computeIfAbsent(
+            locale == null ? Locale.getDefault().toString() : locale,
+            l -> localize(l, entries.get()));
+    }
+
+    private Dictionary<String, String> localize(
+        String locale,
+        EntryIndex index)
+    {
+        var base = headers.getOrDefault(Constants.BUNDLE_LOCALIZATION,
+            Constants.BUNDLE_LOCALIZATION_DEFAULT_BASENAME);
+        var names = new ArrayList<String>();
+        names.add(base);
+        var suffix = new StringBuilder();
+        for (String part : locale.split("_"))
+        {
+            suffix.append('_').append(part);
+            names.add(base + suffix);
+        }
+
+        // the most specific resource overrides the more general ones
+        var translations = new Properties();
+        for (String name : names)
+        {
+            var url = index == null
+                ? null
+                : index.getEntry(name + ".properties");
+            if (url == null)
+            {
+                continue;
+            }
+
+            try (var in = url.openStream())
+            {
+                translations.load(in);
+            }
+            catch (IOException e)
+            {
+                logger.log(Level.WARNING, "Could not read " + url, e);
+            }
+        }
+
+        var localized = new HashMap<>(headers);
+        for (var e : localized.entrySet())
+        {
+            var value = e.getValue();
+            if (value.startsWith("%"))
+            {
+                var key = value.substring(1);
+                e.setValue(translations.getProperty(key, key));
+            }
+        }
+        return new ImmutableDictionary(Collections.unmodifiableMap(localized));
+    }
+
+    /**
+     * A read-only {@link Dictionary} view of a map.
+     */
+    private static class ImmutableDictionary
+        extends Dictionary<String, String>
+    {
+        private final Map<String, String> map;
+
+        private ImmutableDictionary(Map<String, String> map)
+        {
+            this.map = map;
+        }
+
+        @Override
+        public int size()
+        {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return map.isEmpty();
+        }
+
+        @Override
+        public Enumeration<String> keys()
+        {
+            return Collections.enumeration(map.keySet());
+        }
+
+        @Override
+        public Enumeration<String> elements()
+        {
+            return Collections.enumeration(map.values());
+        }
+
+        @Override
+        public String get(Object key)
+        {
+            return map.get(key);
+        }
+
+        @Override
+        public String put(String key, String value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String remove(Object key)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString()
+        {
+            return map.toString();
+        }
+    }
+}
@@ -22,14 +22,17 @@ import java.net.*;
 import java.nio.file.*;
 import java.security.cert.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
 import java.util.jar.*;
 import java.util.logging.*;
 import java.util.stream.*;
 import java.util.zip.*;
-import org.apache.commons.io.file.*;
-import org.apache.commons.io.filefilter.*;
 import org.jitsi.impl.osgi.framework.launch.*;
 import org.jitsi.impl.osgi.framework.startlevel.*;
+import org.jitsi.impl.osgi.framework.storage.*;
 import org.jitsi.osgi.framework.*;
 import org.osgi.framework.*;
 import org.osgi.framework.startlevel.*;
@@ -39,17 +42,33 @@ import org.osgi.framework.startlevel.*;
  * @author Pawel Domas
  */
 public class BundleImpl
-    implements Bundle, BundleActivatorHolder
+    implements Bundle, BundleActivatorHolder, AsyncLifecycle
 {
     private static final Logger logger =
         Logger.getLogger(BundleImpl.class.getName());
 
-    private final List<Class<? extends BundleActivator>>
-        bundleActivatorClasses = new ArrayList<>();
+    private static final int DEFAULT_TRANSITION_TIMEOUT = 30_000;
 
+    private final List<ActivatorFactory> activatorFactories
+        = new CopyOnWriteArrayList<>();
+
+    /**
+     * The activators that have been started. Guarded by
+     * {@link #transitionLock}.
+     */
     private final List<BundleActivator> bundleActivators = new ArrayList<>();
 
-    private Dictionary<String, String> headers;
+    private final Set<String> requiredServices = new CopyOnWriteArraySet<>();
+
+    private final Set<String> providedServices = new CopyOnWriteArraySet<>();
+
+    /**
+     * The manifest headers, read on first use. Guarded by
+     * {@link #headersLock} for writes.
+     */
+    private volatile BundleHeaders headers;
+
+    private final Object headersLock = new Object();
 
     private BundleContext bundleContext;
 
@@ -62,9 +81,37 @@ public class BundleImpl
 
     private final String location;
 
-    protected final ClassLoader classLoader;
+    /**
+     * The class loader of this bundle, replaced on update and released on
+     * uninstall.
+     */
+    protected volatile ClassLoader classLoader;
+
+    private final AtomicInteger state = new AtomicInteger(INSTALLED);
+
+    /**
+     * Held for the whole of a start or stop, so that a bundle is never
+     * started and stopped concurrently, e.g. by fast start level changes.
+     * Reentrant, so that an activator may stop its own bundle.
+     */
+    private final ReentrantLock transitionLock = new ReentrantLock();
+
+    /**
+     * The cached metadata of the location of this bundle, {@code null} if the
+     * framework has no storage area.
+     */
+    private volatile BundleMetadata metadata;
 
-    private volatile int state = INSTALLED;
+    private volatile long lastModified;
+
+    /**
+     * The entries of this bundle, built on first use and dropped on update.
+     */
+    private volatile EntryIndex entryIndex;
+
+    private volatile boolean lazyActivation;
+
+    private volatile boolean lazyActivationPending;
 
     public BundleImpl(FrameworkImpl framework, long bundleId, String location,
         ClassLoader classLoader)
@@ -73,30 +120,122 @@ public class BundleImpl
         this.bundleId = bundleId;
         this.location = location;
         this.classLoader = classLoader;
-        var urls = findEntries("META-INF", "MANIFEST.MF", false);
-        if (urls.hasMoreElements())
+
+        readMetadata();
+        this.lastModified = metadata == null
+            ? System.currentTimeMillis()
+            : metadata.getInstallTime();
+    }
+
+    /**
+     * Reads the cached metadata of the location of this bundle and drops the
+     * headers, which are read again from it on the next use.
+     */
+    private void readMetadata()
+    {
+        var storage = framework == null ? null : framework.getStorage();
+        synchronized (headersLock)
+        {
+            metadata = storage == null ? null : storage.getMetadata(location);
+            headers = null;
+        }
+    }
+
+    /**
+     * Gets the manifest headers of this bundle, from the metadata cache if
+     * possible, and otherwise by reading the manifest.
+     *
+     * @return the headers.
+     */
+    private BundleHeaders getBundleHeaders()
+    {
+        var headers = this.headers;
+        if (headers != null)
+        {
+            return headers;
+        }
+
+        synchronized (headersLock)
+        {
+            headers = this.headers;
+            if (headers == null)
+            {
+                var metadata = this.metadata;
+                var manifestHeaders = metadata == null
+                    ? null
+                    : metadata.getHeaders();
+                if (manifestHeaders == null)
+                {
+                    manifestHeaders = readManifestHeaders();
+                    if (metadata != null)
+                    {
+                        metadata.setHeaders(manifestHeaders);
+                        framework.getStorage().updated();
+                    }
+                }
+
+                headers = new BundleHeaders(manifestHeaders, location);
+                this.headers = headers;
+            }
+            return headers;
+        }
+    }
+
+    private Map<String, String> readManifestHeaders()
+    {
+        var file = FrameworkStorage.toFile(location);
+        if (file != null && file.isFile() && file.getName().endsWith(".jar"))
         {
-            var url = urls.nextElement();
-            try (var s = url.openStream())
+            // read the manifest and index the entries with a single open
+            try (var jar = new JarFile(file, false))
             {
-                var m = new Manifest(s);
-                this.headers = new Hashtable<>(m.getMainAttributes()
-                    .entrySet()
-                    .stream()
-                    .collect(Collectors.toMap(e -> e.getKey().toString(), e -> e.getValue().toString())));
+                if (metadata != null && metadata.getEntries() == null)
+                {
+                    metadata.setEntries(jar.stream()
+                        .map(ZipEntry::getName)
+                        .collect(Collectors.toList()));
+                }
+
+                var m = jar.getManifest();
+                return m == null
+                    ? Collections.emptyMap()
+                    : toHeaders(m);
             }
             catch (IOException ex)
             {
-                this.headers = new Hashtable<>();
-                logger.log(Level.WARNING, "Could not read headers from manifest", ex);
+                logger.log(Level.WARNING,
+                    "Could not read headers from manifest", ex);
+                return Collections.emptyMap();
             }
         }
-        else
+
+        // not through getEntry, the headers remain available after uninstall
+        var index = getEntryIndex();
+        var url = index == null ? null : index.getEntry("META-INF/MANIFEST.MF");
+        if (url == null)
         {
-            this.headers = new Hashtable<>();
+            return Collections.emptyMap();
         }
 
-        this.headers.put("Location", location);
+        try (var s = url.openStream())
+        {
+            return toHeaders(new Manifest(s));
+        }
+        catch (IOException ex)
+        {
+            logger.log(Level.WARNING, "Could not read headers from manifest",
+                ex);
+            return Collections.emptyMap();
+        }
+    }
+
+    private static Map<String, String> toHeaders(Manifest m)
+    {
+        return m.getMainAttributes()
+            .entrySet()
+            .stream()
+            .collect(Collectors.toMap(e -> e.getKey().toString(),
+                e -> e.getValue().toString()));
     }
 
     @SuppressWarnings("unchecked")
@@ -113,7 +252,8 @@ public class BundleImpl
                 return (A) bundleStartLevel;
             }
         }
-        else if (BundleActivatorHolder.class.equals(type))
+        else if (BundleActivatorHolder.class.equals(type)
+            || AsyncLifecycle.class.equals(type))
         {
             return (A) this;
         }
@@ -133,98 +273,99 @@ public class BundleImpl
         String filePattern,
         boolean recurse)
     {
-        if (location == null)
+        checkInstalled();
+        var index = getEntryIndex();
+        return index == null
+            ? Collections.emptyEnumeration()
+            : Collections.enumeration(
+                index.findEntries(path, filePattern, recurse));
+    }
+
+    private void checkInstalled()
+    {
+        if (getState() == UNINSTALLED)
         {
-            return Collections.emptyEnumeration();
+            throw new IllegalStateException("Bundle.UNINSTALLED");
         }
+    }
 
-        File f;
-        try
+    /**
+     * Builds the entry index of this bundle ahead of its first use, e.g.
+     * while the bundle is prepared for installation outside the framework
+     * lock. The manifest headers are still read on first use.
+     */
+    public void prepare()
+    {
+        getEntryIndex();
+    }
+
+    /**
+     * Gets the entry index of this bundle. The index of a jar is built on
+     * first use from the cached entry names of its central directory, that of
+     * an exploded directory from a single walk, and rebuilt when
+     * {@link EntryIndex#isStale()} detects a change in the directory.
+     *
+     * @return the index, or {@code null} if this bundle is neither a jar nor
+     * a directory.
+     */
+    private EntryIndex getEntryIndex()
+    {
+        var index = entryIndex;
+        if ((index != null && !index.isStale()) || location == null)
         {
-            f = new File(new URI(location));
+            return index;
         }
-        catch (URISyntaxException e)
+
+        var f = FrameworkStorage.toFile(location);
+        if (f == null)
         {
-            logger.log(Level.SEVERE,
-                "Could not get bundle URI from " + location, e);
-            return Collections.emptyEnumeration();
+            return null;
         }
-        if (f.exists())
-        {
-            if (path.startsWith("/"))
-            {
-                path = path.substring(1);
-            }
-            if (!path.endsWith("/"))
-            {
-                path += "/";
-            }
 
-            List<URL> matches;
-            if (f.isFile() && f.getName().endsWith(".jar"))
-            {
-                matches = getJarEntries(path, filePattern, recurse, f);
-            }
-            else if (f.isDirectory())
+        if (f.isFile() && f.getName().endsWith(".jar"))
+        {
+            var names = getJarEntryNames(f);
+            if (names != null)
             {
-                matches = getDirectoryEntries(path, filePattern, f);
+                index = EntryIndex.forJar(f, names);
             }
-            else
+        }
+        else if (f.isDirectory())
+        {
+            try
             {
-                logger.log(Level.SEVERE,
-                    location + " is neither a file nor a directory");
-                return Collections.emptyEnumeration();
+                index = EntryIndex.forDirectory(f);
             }
-
-            if (matches == null)
+            catch (IOException e)
             {
-                return Collections.emptyEnumeration();
+                logger.log(Level.SEVERE, "Could not walk files in " + location,
+                    e);
             }
-
-            var it = matches.iterator();
-            return new Enumeration<>()
-            {
-                @Override
-                public boolean hasMoreElements()
-                {
-                    return it.hasNext();
-                }
-
-                @Override
-                public URL nextElement()
-                {
-                    return it.next();
-                }
-            };
         }
 
-        return Collections.emptyEnumeration();
+        entryIndex = index;
+        return index;
     }
 
-    private List<URL> getJarEntries(String path, String filePattern,
-        boolean recurse, File f)
+    /**
+     * Gets the names of all entries of a jar bundle, from the metadata cache
+     * if possible.
+     *
+     * @param f the jar file of this bundle.
+     * @return the entry names, or {@code null} if the jar cannot be read.
+     */
+    private List<String> getJarEntryNames(File f)
     {
+        var entries = metadata == null ? null : metadata.getEntries();
+        if (entries != null)
+        {
+            return entries;
+        }
+
         try (var z = new ZipFile(f))
         {
-            var filter = new WildcardFileFilter(
-                filePattern == null ? "*" : filePattern);
-            return z.stream()
-                .filter(e -> recurse
-                    ? e.getName().startsWith(path)
-                    : e.getName().equals(path)
-                        && filter.accept(new File(e.getName()))
-                )
-                .map(e -> {
-                    try
-                    {
-                        return new URL(e.getName());
-                    }
-                    catch (MalformedURLException ex)
-                    {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
+            entries = z.stream()
+                .map(ZipEntry::getName)
                 .collect(Collectors.toList());
         }
         catch (IOException e)
@@ -232,52 +373,14 @@ public class BundleImpl
             logger.log(Level.SEVERE, "Could not open " + location, e);
             return null;
         }
-    }
 
-    private List<URL> getDirectoryEntries(String path, String filePattern,
-        File f)
-    {
-        var fileFilter = new WildcardFileFilter(
-            filePattern == null ? "*" : filePattern);
-        var visitor = AccumulatorPathVisitor.withLongCounters(fileFilter,
-            FileFilterUtils.trueFileFilter());
-        try
-        {
-            var dir = new File(f, path);
-            if (!dir.exists())
-            {
-                return Collections.emptyList();
-            }
-
-            Files.walkFileTree(dir.toPath(), visitor);
-        }
-        catch (IOException e)
+        if (metadata != null)
         {
-            logger.log(Level.SEVERE, "Could not walk files in " + location, e);
-            return null;
+            metadata.setEntries(entries);
+            getFramework().getStorage().updated();
         }
 
-        if (!visitor.getFileList().isEmpty())
-        {
-            return visitor.getFileList().stream()
-                .map(r ->
-                {
-                    try
-                    {
-                        return r.toUri().toURL();
-                    }
-                    catch (MalformedURLException e)
-                    {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-        }
-        else
-        {
-            return null;
-        }
+        return entries;
     }
 
     public BundleContext getBundleContext()
@@ -300,17 +403,25 @@ public class BundleImpl
 
     public File getDataFile(String filename)
     {
-        throw new UnsupportedOperationException();
+        var storage = getFramework().getStorage();
+        return storage == null
+            ? null
+            : storage.getDataFile(getLocation(), filename);
     }
 
     public URL getEntry(String path)
     {
-        throw new UnsupportedOperationException();
+        checkInstalled();
+        var index = getEntryIndex();
+        return index == null ? null : index.getEntry(path);
     }
 
     public Enumeration<String> getEntryPaths(String path)
     {
-        throw new UnsupportedOperationException();
+        checkInstalled();
+        var index = getEntryIndex();
+        var paths = index == null ? null : index.getEntryPaths(path);
+        return paths == null ? null : Collections.enumeration(paths);
     }
 
     public FrameworkImpl getFramework()
@@ -325,12 +436,12 @@ public class BundleImpl
 
     public Dictionary<String, String> getHeaders(String locale)
     {
-        return headers;
+        return getBundleHeaders().getLocalized(locale, this::getEntryIndex);
     }
 
     public long getLastModified()
     {
-        throw new UnsupportedOperationException();
+        return lastModified;
     }
 
     public String getLocation()
@@ -344,14 +455,53 @@ public class BundleImpl
         return framework.getRegisteredServices();
     }
 
+    /**
+     * Gets a resource, from the entries of this bundle first and then from its
+     * class loader.
+     *
+     * @param name the name of the resource.
+     * @return the URL of the resource, or {@code null} if it was not found.
+     */
     public URL getResource(String name)
     {
-        throw new UnsupportedOperationException();
+        var url = getEntry(name);
+        if (url == null)
+        {
+            var classLoader = this.classLoader;
+            url = classLoader == null ? null : classLoader.getResource(name);
+        }
+
+        return url;
     }
 
+    /**
+     * Gets all resources of a name, the entry of this bundle first and then
+     * those of its class loader.
+     *
+     * @param name the name of the resource.
+     * @return the URLs of the resources, or {@code null} if none was found.
+     */
     public Enumeration<URL> getResources(String name)
+        throws IOException
     {
-        throw new UnsupportedOperationException();
+        var urls = new LinkedHashSet<URL>();
+        var url = getEntry(name);
+        if (url != null)
+        {
+            urls.add(url);
+        }
+
+        var classLoader = this.classLoader;
+        if (classLoader != null)
+        {
+            var resources = classLoader.getResources(name);
+            while (resources.hasMoreElements())
+            {
+                urls.add(resources.nextElement());
+            }
+        }
+
+        return urls.isEmpty() ? null : Collections.enumeration(urls);
     }
 
     public ServiceReference<?>[] getServicesInUse()
@@ -367,17 +517,17 @@ public class BundleImpl
 
     public int getState()
     {
-        return state;
+        return state.get();
     }
 
     public String getSymbolicName()
     {
-        return Objects.requireNonNullElse(headers.get(Constants.BUNDLE_SYMBOLICNAME), Long.toString(bundleId));
+        return Objects.requireNonNullElse(getBundleHeaders().get(Constants.BUNDLE_SYMBOLICNAME), Long.toString(bundleId));
     }
 
     public Version getVersion()
     {
-        throw new UnsupportedOperationException();
+        return getBundleHeaders().getVersion();
     }
 
     public boolean hasPermission(Object permission)
@@ -385,10 +535,110 @@ public class BundleImpl
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Gets the class loader of this bundle.
+     *
+     * @return the class loader of this bundle.
+     */
+    public ClassLoader getClassLoader()
+    {
+        return classLoader;
+    }
+
     public Class<?> loadClass(String name)
         throws ClassNotFoundException
     {
-        return classLoader.loadClass(name);
+        var classLoader = this.classLoader;
+        if (classLoader == null)
+        {
+            throw new IllegalStateException("Bundle.UNINSTALLED");
+        }
+
+        var c = classLoader.loadClass(name);
+        activateLazily();
+        return c;
+    }
+
+    /**
+     * Starts recording the classes the class loader of this bundle defines,
+     * for {@link #saveClassList()}.
+     */
+    public void startClassRecording()
+    {
+        var classLoader = this.classLoader;
+        if (classLoader instanceof BundleClassLoader)
+        {
+            ((BundleClassLoader) classLoader).startRecording();
+        }
+    }
+
+    /**
+     * Stores the classes recorded since {@link #startClassRecording()} in the
+     * metadata of the location of this bundle, as the class list that
+     * {@link #preloadClasses()} loads on the next run.
+     */
+    public void saveClassList()
+    {
+        var classLoader = this.classLoader;
+        var metadata = this.metadata;
+        if (!(classLoader instanceof BundleClassLoader) || metadata == null)
+        {
+            return;
+        }
+
+        var classes = ((BundleClassLoader) classLoader).stopRecording();
+        if (classes != null
+            && !classes.isEmpty()
+            && !classes.equals(metadata.getClassList()))
+        {
+            metadata.setClassList(classes);
+            framework.getStorage().updated();
+        }
+    }
+
+    /**
+     * Loads, without initializing them, the classes this bundle defined
+     * during the previous startup, so that they are already defined when its
+     * activators run. Nothing is loaded for a bundle that is activated
+     * lazily, which the first defined class would activate.
+     *
+     * @return the number of loaded classes.
+     */
+    public int preloadClasses()
+    {
+        var classLoader = this.classLoader;
+        var metadata = this.metadata;
+        var classes = metadata == null ? null : metadata.getClassList();
+        if (classes == null
+            || !(classLoader instanceof BundleClassLoader)
+            || isLazyActivation())
+        {
+            return 0;
+        }
+
+        int count = 0;
+        for (String name : classes)
+        {
+            if (this.classLoader != classLoader
+                || Thread.currentThread().isInterrupted())
+            {
+                // updated, uninstalled or the framework stopped meanwhile
+                break;
+            }
+
+            try
+            {
+                Class.forName(name, false, classLoader);
+                count++;
+            }
+            catch (ClassNotFoundException | LinkageError e)
+            {
+                // changed since the class list was recorded
+                logger.log(Level.FINEST, "Could not preload " + name, e);
+            }
+        }
+
+        return count;
     }
 
     protected void setBundleContext(BundleContext bundleContext)
@@ -398,18 +648,68 @@ public class BundleImpl
 
     protected void setState(int state)
     {
-        int oldState = getState();
-
+        int oldState = this.state.getAndSet(state);
         if (oldState != state)
         {
-            this.state = state;
+            stateChanged(oldState, state);
+        }
+    }
+
+    /**
+     * Atomically moves this bundle from an expected state to a new state.
+     *
+     * @param expectedState the state this bundle must be in.
+     * @param newState the new state.
+     * @return {@code true} if the state was changed, {@code false} if the
+     * bundle was not in the expected state.
+     */
+    protected boolean compareAndSetState(int expectedState, int newState)
+    {
+        if (!state.compareAndSet(expectedState, newState))
+        {
+            return false;
+        }
 
-            int newState = getState();
+        if (expectedState != newState)
+        {
+            stateChanged(expectedState, newState);
+        }
+        return true;
+    }
 
-            if (oldState != newState)
+    /**
+     * Acquires the lock serializing the state transitions of this bundle,
+     * waiting at most {@link FrameworkImpl#BUNDLE_TRANSITION_TIMEOUT} for a
+     * transition running on another thread.
+     *
+     * @throws BundleException if the lock could not be acquired in time.
+     */
+    private void lockTransition()
+        throws BundleException
+    {
+        int timeout = framework == null
+            ? DEFAULT_TRANSITION_TIMEOUT
+            : framework.getConfigurationInt(
+                FrameworkImpl.BUNDLE_TRANSITION_TIMEOUT,
+                DEFAULT_TRANSITION_TIMEOUT);
+        try
+        {
+            if (timeout <= 0)
             {
-                stateChanged(oldState, newState);
+                transitionLock.lockInterruptibly();
             }
+            else if (!transitionLock.tryLock(timeout, TimeUnit.MILLISECONDS))
+            {
+                throw new BundleException("Bundle " + location
+                    + " did not complete a state transition within "
+                    + timeout + "ms", BundleException.STATECHANGE_ERROR);
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new BundleException("Interrupted waiting for bundle "
+                + location, BundleException.STATECHANGE_ERROR, ie);
         }
     }
 
@@ -427,6 +727,25 @@ public class BundleImpl
             throw new IllegalStateException("Bundle.UNINSTALLED");
         }
 
+        lockTransition();
+        try
+        {
+            startLocked(options);
+        }
+        finally
+        {
+            transitionLock.unlock();
+        }
+    }
+
+    private void startLocked(int options)
+        throws BundleException
+    {
+        if (getState() == UNINSTALLED)
+        {
+            throw new IllegalStateException("Bundle.UNINSTALLED");
+        }
+
         BundleStartLevel bundleStartLevel = adapt(BundleStartLevel.class);
         FrameworkStartLevel frameworkStartLevel
             = getFramework().adapt(FrameworkStartLevel.class);
@@ -450,23 +769,166 @@ public class BundleImpl
             return;
         }
 
-        if (getState() == INSTALLED)
+        compareAndSetState(INSTALLED, RESOLVED);
+
+        if ((options & START_ACTIVATION_POLICY) == START_ACTIVATION_POLICY
+            && isLazyActivation())
         {
-            setState(RESOLVED);
+            if (getFramework().isSharedClassLoaderMode())
+            {
+                // the shared class loader never sees the classes of a bundle
+                throw new BundleException("Lazy activation of " + location
+                    + " requires " + FrameworkImpl.CLASS_LOADER_MODE + "="
+                    + FrameworkImpl.CLASS_LOADER_MODE_BUNDLE,
+                    BundleException.UNSUPPORTED_OPERATION);
+            }
+
+            if (compareAndSetState(RESOLVED, STARTING))
+            {
+                lazyActivationPending = true;
+                if (classLoader instanceof BundleClassLoader)
+                {
+                    ((BundleClassLoader) classLoader)
+                        .setLazyActivationTrigger(this::activateLazily);
+                }
+                getFramework().fireBundleEvent(BundleEvent.LAZY_ACTIVATION,
+                    this);
+            }
+            return;
+        }
+
+        lazyActivationPending = false;
+        if (getState() != STARTING && !compareAndSetState(RESOLVED, STARTING))
+        {
+            throw new BundleException("Cannot start bundle " + location
+                + " in state " + getState(), BundleException.INVALID_OPERATION);
+        }
+        activate();
+    }
+
+    /**
+     * Runs the activators of a bundle that was started with the lazy
+     * activation policy and is waiting in {@link #STARTING} for its trigger,
+     * i.e. the first lookup of one of its provided services or the first
+     * class loaded from it. Does nothing for any other bundle.
+     * <p>
+     * Takes the {@link #transitionLock}, so it must not be called while
+     * holding a class loading lock: an activator that holds the transition
+     * lock may load classes. The class loader runs it after releasing the
+     * lock of the class it defined.
+     */
+    public void activateLazily()
+    {
+        if (!lazyActivationPending)
+        {
+            return;
+        }
+
+        try
+        {
+            lockTransition();
+        }
+        catch (BundleException e)
+        {
+            getFramework().fireFrameworkEvent(FrameworkEvent.ERROR, this, e);
+            return;
         }
 
-        setState(STARTING);
         try
         {
-            for (var activatorClass : bundleActivatorClasses)
+            if (!lazyActivationPending || getState() != STARTING)
+            {
+                return;
+            }
+
+            lazyActivationPending = false;
+            if (classLoader instanceof BundleClassLoader)
             {
-                logger.log(Level.INFO,
-                    "Starting activator " + activatorClass.getName()
-                        + " in " + location);
-                var activator =
-                    activatorClass.getDeclaredConstructor().newInstance();
-                activator.start(getBundleContext());
-                bundleActivators.add(activator);
+                ((BundleClassLoader) classLoader)
+                    .setLazyActivationTrigger(null);
+            }
+
+            logger.info("Lazily activating " + location);
+            activate();
+        }
+        catch (BundleException e)
+        {
+            getFramework().fireFrameworkEvent(FrameworkEvent.ERROR, this, e);
+        }
+        finally
+        {
+            transitionLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether this bundle is waiting for a trigger of its lazy
+     * activation policy.
+     *
+     * @return {@code true} if the activators of this bundle are run on the
+     * first lookup of one of its services or the first class load.
+     */
+    public boolean isLazyActivationPending()
+    {
+        return lazyActivationPending;
+    }
+
+    /**
+     * Checks whether this bundle declares the lazy activation policy, either
+     * in its {@code Bundle-ActivationPolicy} manifest header or through
+     * {@link #setLazyActivation(boolean)}.
+     *
+     * @return {@code true} if the bundle is activated lazily.
+     */
+    public boolean isLazyActivation()
+    {
+        if (lazyActivation)
+        {
+            return true;
+        }
+
+        var policy = getBundleHeaders().get(Constants.BUNDLE_ACTIVATIONPOLICY);
+        return policy != null
+            && Constants.ACTIVATION_LAZY.equals(policy.split(";", 2)[0].trim());
+    }
+
+    @Override
+    public void setLazyActivation(boolean lazyActivation)
+    {
+        this.lazyActivation = lazyActivation;
+    }
+
+    /**
+     * Runs the activators of this bundle, which is in {@link #STARTING}. The
+     * caller holds the {@link #transitionLock}.
+     */
+    private void activate()
+        throws BundleException
+    {
+        var profiler = getFramework().getStartupProfiler();
+        try
+        {
+            for (var factory : activatorFactories)
+            {
+                var measurement = profiler.beginActivator();
+                var name = factory.getName();
+                var succeeded = false;
+                try
+                {
+                    var activator = factory.create();
+                    name = activator.getClass().getName();
+                    logger.log(Level.INFO,
+                        "Starting activator " + name + " in " + location);
+                    activator.start(getBundleContext());
+                    bundleActivators.add(activator);
+                    succeeded = true;
+                }
+                finally
+                {
+                    profiler.activatorFinished(measurement, this,
+                        Objects.toString(name, "<supplier>"), "start",
+                        succeeded);
+                }
             }
         }
         catch (Exception t)
@@ -474,18 +936,30 @@ public class BundleImpl
             logger.log(Level.SEVERE,
                 "Error starting bundle: " + getLocation(), t);
 
+            // undone in the reverse order of the activators that started
             setState(STOPPING);
+            for (int i = bundleActivators.size() - 1; i >= 0; i--)
+            {
+                try
+                {
+                    bundleActivators.get(i).stop(getBundleContext());
+                }
+                catch (Exception e)
+                {
+                    t.addSuppressed(e);
+                }
+            }
+            bundleActivators.clear();
             setState(RESOLVED);
             getFramework().fireBundleEvent(BundleEvent.STOPPED, this);
             throw new BundleException("BundleActivator.start", t);
         }
 
-        if (getState() == UNINSTALLED)
+        if (!compareAndSetState(STARTING, ACTIVE)
+            && getState() == UNINSTALLED)
         {
             throw new IllegalStateException("Bundle.UNINSTALLED");
         }
-
-        setState(ACTIVE);
     }
 
     protected void stateChanged(int oldState, int newState)
@@ -523,9 +997,28 @@ public class BundleImpl
         stop(0);
     }
 
-    @SuppressWarnings("fallthrough")
     public void stop(int options)
         throws BundleException
+    {
+        if (getState() == UNINSTALLED)
+        {
+            throw new IllegalStateException("Bundle.UNINSTALLED");
+        }
+
+        lockTransition();
+        try
+        {
+            stopLocked();
+        }
+        finally
+        {
+            transitionLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("fallthrough")
+    private void stopLocked()
+        throws BundleException
     {
         boolean wasActive = false;
 
@@ -534,31 +1027,47 @@ public class BundleImpl
         case ACTIVE:
             wasActive = true;
         case STARTING:
+            lazyActivationPending = false;
+            if (classLoader instanceof BundleClassLoader)
+            {
+                ((BundleClassLoader) classLoader)
+                    .setLazyActivationTrigger(null);
+            }
             setState(STOPPING);
 
             Throwable exception = null;
 
             if (wasActive)
             {
+                var profiler = getFramework().getStartupProfiler();
                 for (var activator : bundleActivators)
                 {
+                    var measurement = profiler.beginActivator();
+                    var succeeded = false;
                     try
                     {
                         activator.stop(getBundleContext());
+                        succeeded = true;
                     }
                     catch (Exception t)
                     {
                         exception = t;
                     }
+                    finally
+                    {
+                        profiler.activatorFinished(measurement, this,
+                            activator.getClass().getName(), "stop", succeeded);
+                    }
                 }
             }
 
-            if (getState() == UNINSTALLED)
+            // a restart creates new activator instances
+            bundleActivators.clear();
+            if (!compareAndSetState(STOPPING, RESOLVED))
             {
                 throw new BundleException("Bundle.UNINSTALLED");
             }
 
-            setState(RESOLVED);
             getFramework().fireBundleEvent(BundleEvent.STOPPED, this);
             if (exception != null)
             {
@@ -573,9 +1082,80 @@ public class BundleImpl
         }
     }
 
+    @Override
+    public CompletableFuture<Void> startAsync(int options)
+    {
+        return CompletableFuture.runAsync(() ->
+        {
+            try
+            {
+                start(options);
+            }
+            catch (BundleException e)
+            {
+                throw new CompletionException(e);
+            }
+        }, getFramework().getExecutor());
+    }
+
+    @Override
+    public CompletableFuture<Void> stopAsync(int options)
+    {
+        return CompletableFuture.runAsync(() ->
+        {
+            try
+            {
+                stop(options);
+            }
+            catch (BundleException e)
+            {
+                throw new CompletionException(e);
+            }
+        }, getFramework().getExecutor());
+    }
+
+    /**
+     * Stops this bundle and removes every trace of it from the framework: its
+     * services, listeners, start level and location indexes and its data
+     * area. The class loader is closed, together with the native libraries it
+     * extracted, and released so that it and the classes it defined can be
+     * garbage collected.
+     */
     public void uninstall()
+        throws BundleException
     {
-        throw new UnsupportedOperationException();
+        if (getState() == UNINSTALLED)
+        {
+            throw new IllegalStateException("Bundle.UNINSTALLED");
+        }
+
+        lockTransition();
+        try
+        {
+            if (getState() == UNINSTALLED)
+            {
+                throw new IllegalStateException("Bundle.UNINSTALLED");
+            }
+
+            try
+            {
+                stopLocked();
+            }
+            catch (BundleException e)
+            {
+                // the uninstall continues regardless
+                getFramework().fireFrameworkEvent(FrameworkEvent.ERROR, this,
+                    e);
+            }
+
+            setState(UNINSTALLED);
+            getFramework().bundleUninstalled(this);
+            releaseClassLoader();
+        }
+        finally
+        {
+            transitionLock.unlock();
+        }
     }
 
     public void update()
@@ -584,16 +1164,170 @@ public class BundleImpl
         update(null);
     }
 
+    /**
+     * Stops this bundle, replaces its class loader and re-reads its manifest
+     * from the location, and starts it again if it was active. The content
+     * of a bundle cannot be replaced from a stream, its location is always
+     * used.
+     *
+     * @param input must be {@code null}.
+     * @throws BundleException if {@code input} is not {@code null} or the
+     * bundle could not be stopped or started.
+     */
     public void update(InputStream input)
         throws BundleException
     {
-        throw new UnsupportedOperationException();
+        if (input != null)
+        {
+            try
+            {
+                input.close();
+            }
+            catch (IOException e)
+            {
+                logger.log(Level.FINE, "Could not close update stream", e);
+            }
+
+            throw new BundleException(
+                "Bundles can only be updated from their location",
+                BundleException.UNSUPPORTED_OPERATION);
+        }
+
+        if (getState() == UNINSTALLED)
+        {
+            throw new IllegalStateException("Bundle.UNINSTALLED");
+        }
+
+        lockTransition();
+        try
+        {
+            if (getState() == UNINSTALLED)
+            {
+                throw new IllegalStateException("Bundle.UNINSTALLED");
+            }
+
+            var wasActive = getState() == ACTIVE || getState() == STARTING;
+            stopLocked();
+
+            var framework = getFramework();
+            framework.unregisterServices(this);
+            releaseClassLoader();
+            classLoader = framework.createClassLoader();
+
+            var storage = framework.getStorage();
+            if (storage != null)
+            {
+                storage.invalidate(location);
+            }
+            entryIndex = null;
+            readMetadata();
+            lastModified = System.currentTimeMillis();
+
+            setState(INSTALLED);
+            framework.fireBundleEvent(BundleEvent.UPDATED, this);
+            if (wasActive)
+            {
+                startLocked(START_ACTIVATION_POLICY);
+            }
+        }
+        finally
+        {
+            transitionLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the class loader of this bundle, which must not be active, by
+     * a new one from the framework and closes the previous one, unless the
+     * bundle is uninstalled.
+     *
+     * @throws BundleException if a transition of this bundle did not complete
+     * in time.
+     */
+    public void renewClassLoader()
+        throws BundleException
+    {
+        lockTransition();
+        try
+        {
+            if (getState() != UNINSTALLED)
+            {
+                releaseClassLoader();
+                classLoader = getFramework().createClassLoader();
+            }
+        }
+        finally
+        {
+            transitionLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the class loader of this bundle, which cannot load classes
+     * afterwards, e.g. when it is uninstalled or was never published.
+     */
+    public void releaseClassLoader()
+    {
+        var classLoader = this.classLoader;
+        this.classLoader = null;
+        if (classLoader instanceof BundleClassLoader)
+        {
+            try
+            {
+                ((BundleClassLoader) classLoader).close();
+            }
+            catch (IOException e)
+            {
+                logger.log(Level.WARNING,
+                    "Could not close the class loader of " + location, e);
+            }
+        }
     }
 
     @Override
     public void addBundleActivator(
         Class<? extends BundleActivator> activatorClass)
     {
-        bundleActivatorClasses.add(activatorClass);
+        activatorFactories.add(ActivatorFactory.forClass(activatorClass));
+    }
+
+    @Override
+    public void addBundleActivator(
+        Supplier<? extends BundleActivator> activatorSupplier)
+    {
+        activatorFactories.add(
+            ActivatorFactory.forSupplier(activatorSupplier));
+    }
+
+    @Override
+    public void addRequiredService(String className)
+    {
+        requiredServices.add(className);
+    }
+
+    @Override
+    public void addProvidedService(String className)
+    {
+        providedServices.add(className);
+    }
+
+    /**
+     * Gets the services that must be registered before this bundle is started.
+     *
+     * @return the names of the required service interfaces.
+     */
+    public Set<String> getRequiredServices()
+    {
+        return Collections.unmodifiableSet(requiredServices);
+    }
+
+    /**
+     * Gets the services this bundle declares to register when started.
+     *
+     * @return the names of the provided service interfaces.
+     */
+    public Set<String> getProvidedServices()
+    {
+        return Collections.unmodifiableSet(providedServices);
     }
 }
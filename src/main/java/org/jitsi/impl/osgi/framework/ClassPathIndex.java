@@ -0,0 +1,746 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.logging.*;
+
+/**
+ * An index from the directories (packages) of the class path to the class
+ * path entries containing them, built once from the central directories of
+ * the jars and the listings of the directories and shared by all
+ * {@link BundleClassLoader}s of a framework. A lookup only opens the entries
+ * that own the directory of the name, instead of probing every entry in class
+ * path order like a {@link URLClassLoader}.
+ * <p>
+ * Jars referenced by the {@code Class-Path} attribute of a jar manifest are
+ * indexed right after it, as a {@link URLClassLoader} would search them.
+ * The jars stay open until the index is closed, by its owner or by the
+ * release of its last user, and are opened again by the next lookup.
+ * <p>
+ * Directories may change after they were indexed, e.g. build output in an
+ * IDE, or may not exist yet. A name that no indexed entry contains is
+ * therefore also looked up in the directories of the class path, like a
+ * {@link URLClassLoader} would.
+ * <p>
+ * Optionally, the classes of unsigned, single-release jars are read from a
+ * {@link MappedJar} instead of through the {@link JarFile}.
+ */
+public class ClassPathIndex
+    implements Closeable
+{
+    private static final Logger logger
+        = Logger.getLogger(ClassPathIndex.class.getName());
+
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private final URL[] urls;
+
+    /**
+     * Whether to memory-map the jars to read their classes.
+     */
+    private final boolean mapJars;
+
+    private final Object lock = new Object();
+
+    /**
+     * The built index, {@code null} until the first lookup and after
+     * {@link #close()}. Guarded by {@link #lock} for writes.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * The number of class loaders using this index, see {@link #acquire()}.
+     * Guarded by {@link #lock}.
+     */
+    private int users;
+
+    /**
+     * Creates the index of a class path. It is built on the first lookup.
+     *
+     * @param urls the URLs of the class path entries.
+     */
+    public ClassPathIndex(URL[] urls)
+    {
+        this(urls, false);
+    }
+
+    /**
+     * Creates the index of a class path. It is built on the first lookup.
+     *
+     * @param urls the URLs of the class path entries.
+     * @param mapJars whether to memory-map the jars to read their classes,
+     * see {@link Resource#getByteBuffer()}.
+     */
+    public ClassPathIndex(URL[] urls, boolean mapJars)
+    {
+        this.urls = urls.clone();
+        this.mapJars = mapJars;
+    }
+
+    /**
+     * Gets the URLs of the class path, without those referenced by jar
+     * manifests.
+     *
+     * @return a copy of the URLs.
+     */
+    public URL[] getUrls()
+    {
+        return urls.clone();
+    }
+
+    /**
+     * Registers a user of this index, e.g. a class loader, which calls
+     * {@link #release()} when it no longer needs it.
+     *
+     * @return this index.
+     */
+    public ClassPathIndex acquire()
+    {
+        synchronized (lock)
+        {
+            users++;
+        }
+        return this;
+    }
+
+    /**
+     * Unregisters a user of this index, and closes it if it was the last.
+     *
+     * @throws IOException if a jar could not be closed.
+     */
+    public void release()
+        throws IOException
+    {
+        synchronized (lock)
+        {
+            if (users > 0 && --users > 0)
+            {
+                return;
+            }
+        }
+
+        close();
+    }
+
+    /**
+     * Checks whether the index is built and its jars are open.
+     *
+     * @return {@code true} between the first lookup and {@link #close()}.
+     */
+    boolean isOpen()
+    {
+        return snapshot != null;
+    }
+
+    /**
+     * Finds the first class path entry containing a resource.
+     *
+     * @param name the {@code /}-separated name of the resource.
+     * @return the resource, or {@code null} if no entry contains it.
+     */
+    public Resource getResource(String name)
+    {
+        var snapshot = getSnapshot();
+        var owners = snapshot.getOwners(name);
+        for (Entry entry : owners)
+        {
+            var resource = entry.getResource(name);
+            if (resource != null)
+            {
+                return resource;
+            }
+        }
+
+        // added to a directory since it was indexed
+        for (Entry entry : snapshot.directories)
+        {
+            var resource = isOwner(owners, entry)
+                ? null
+                : entry.getResource(name);
+            if (resource != null)
+            {
+                return resource;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds all class path entries containing a resource.
+     *
+     * @param name the {@code /}-separated name of the resource.
+     * @return the resources in class path order.
+     */
+    public List<Resource> getResources(String name)
+    {
+        var resources = new ArrayList<Resource>(1);
+        var snapshot = getSnapshot();
+        var owners = snapshot.getOwners(name);
+        for (Entry entry : owners)
+        {
+            var resource = entry.getResource(name);
+            if (resource != null)
+            {
+                resources.add(resource);
+            }
+        }
+
+        var probed = false;
+        for (Entry entry : snapshot.directories)
+        {
+            var resource = isOwner(owners, entry)
+                ? null
+                : entry.getResource(name);
+            if (resource != null)
+            {
+                resources.add(resource);
+                probed = true;
+            }
+        }
+
+        if (probed)
+        {
+            resources.sort(Comparator.comparingInt(r -> r.entry.position));
+        }
+        return resources;
+    }
+
+    private static boolean isOwner(Entry[] owners, Entry entry)
+    {
+        for (Entry owner : owners)
+        {
+            if (owner == entry)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String getDirectory(String name)
+    {
+        var end = name.length();
+        while (end > 0 && name.charAt(end - 1) == '/')
+        {
+            end--;
+        }
+
+        var slash = name.lastIndexOf('/', end - 1);
+        return slash < 0 ? "" : name.substring(0, slash);
+    }
+
+    private Snapshot getSnapshot()
+    {
+        var snapshot = this.snapshot;
+        if (snapshot != null)
+        {
+            return snapshot;
+        }
+
+        synchronized (lock)
+        {
+            if (this.snapshot == null)
+            {
+                long start = System.nanoTime();
+                var built = build();
+                this.snapshot = built;
+                logger.fine(() -> "Indexed " + built.entries.size()
+                    + " class path entries in "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms");
+            }
+
+            return this.snapshot;
+        }
+    }
+
+    private Snapshot build()
+    {
+        var snapshot = new Snapshot();
+        var owners = new HashMap<String, List<Entry>>();
+        var pending = new ArrayDeque<URL>(Arrays.asList(urls));
+        var seen = new HashSet<String>();
+        while (!pending.isEmpty())
+        {
+            var url = pending.removeFirst();
+            if (!seen.add(url.toString()))
+            {
+                continue;
+            }
+
+            File file;
+            try
+            {
+                file = "file".equals(url.getProtocol())
+                    ? new File(url.toURI())
+                    : null;
+            }
+            catch (URISyntaxException | IllegalArgumentException e)
+            {
+                file = null;
+            }
+
+            if (file == null)
+            {
+                logger.warning("Not indexing class path entry " + url);
+                continue;
+            }
+
+            try
+            {
+                if (file.isDirectory())
+                {
+                    var entry = new Entry(url, file, null, false);
+                    snapshot.add(entry);
+                    indexDirectory(entry, owners);
+                }
+                else if (!file.exists() && url.getPath().endsWith("/"))
+                {
+                    // only probed, until it is created
+                    snapshot.add(new Entry(url, file, null, false));
+                }
+                else if (file.isFile())
+                {
+                    var jar = new JarFile(file, true, JarFile.OPEN_READ,
+                        JarFile.runtimeVersion());
+                    var entry = new Entry(url, file, jar, mapJars);
+                    snapshot.add(entry);
+                    indexJar(entry, owners);
+
+                    // searched right after the jar referencing them
+                    var classPath = getClassPath(entry);
+                    for (int i = classPath.size() - 1; i >= 0; i--)
+                    {
+                        pending.addFirst(classPath.get(i));
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                logger.log(Level.WARNING,
+                    "Could not index class path entry " + url, e);
+            }
+        }
+
+        snapshot.entriesByDirectory = new HashMap<>(
+            owners.size() * 4 / 3 + 1);
+        for (var e : owners.entrySet())
+        {
+            snapshot.entriesByDirectory.put(e.getKey(),
+                e.getValue().toArray(new Entry[0]));
+        }
+        return snapshot;
+    }
+
+    private static void indexJar(Entry entry, Map<String, List<Entry>> owners)
+    {
+        var directories = new HashSet<String>();
+        var names = entry.jar.entries();
+        while (names.hasMoreElements())
+        {
+            var name = names.nextElement().getName();
+            directories.add(getDirectory(name));
+            if (isSignature(name))
+            {
+                entry.mappable = false;
+            }
+
+            if (name.startsWith(VERSIONS))
+            {
+                // the unversioned name of a multi-release entry
+                var slash = name.indexOf('/', VERSIONS.length());
+                if (slash > 0)
+                {
+                    directories.add(getDirectory(name.substring(slash + 1)));
+                }
+            }
+        }
+
+        for (String directory : directories)
+        {
+            owners.computeIfAbsent(directory, k -> new ArrayList<>(1))
+                .add(entry);
+        }
+    }
+
+    private static boolean isSignature(String name)
+    {
+        return name.startsWith("META-INF/")
+            && name.indexOf('/', "META-INF/".length()) < 0
+            && (name.endsWith(".SF") || name.endsWith(".RSA")
+                || name.endsWith(".DSA") || name.endsWith(".EC"));
+    }
+
+    private static void indexDirectory(
+        Entry entry,
+        Map<String, List<Entry>> owners)
+        throws IOException
+    {
+        var root = entry.file.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(
+                Path dir,
+                BasicFileAttributes attrs)
+            {
+                // every directory owns the names of its children
+                var name = root.relativize(dir).toString()
+                    .replace(File.separatorChar, '/');
+                owners.computeIfAbsent(name, k -> new ArrayList<>(1))
+                    .add(entry);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static List<URL> getClassPath(Entry entry)
+        throws IOException
+    {
+        var manifest = entry.getManifest();
+        var classPath = manifest == null
+            ? null
+            : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        if (classPath == null)
+        {
+            return Collections.emptyList();
+        }
+
+        var urls = new ArrayList<URL>();
+        for (String path : classPath.trim().split("\\s+"))
+        {
+            try
+            {
+                urls.add(new URL(entry.url, path));
+            }
+            catch (MalformedURLException e)
+            {
+                logger.warning("Invalid Class-Path " + path + " in "
+                    + entry.url);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Closes the jars of the class path and drops the index, which is built
+     * again by the next lookup. Lookups running concurrently may miss names
+     * in the closed jars.
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        synchronized (lock)
+        {
+            var snapshot = this.snapshot;
+            this.snapshot = null;
+            if (snapshot == null)
+            {
+                return;
+            }
+
+            IOException failure = null;
+            for (Entry entry : snapshot.entries)
+            {
+                if (entry.jar == null)
+                {
+                    continue;
+                }
+
+                try
+                {
+                    entry.jar.close();
+                }
+                catch (IOException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e;
+                    }
+                    else
+                    {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+
+            if (failure != null)
+            {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * The entries of the class path and the index of their directories, built
+     * at once.
+     */
+    private static class Snapshot
+    {
+        /**
+         * The entries by the directory of their names.
+         */
+        private Map<String, Entry[]> entriesByDirectory;
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        /**
+         * The directories of the class path in class path order, including
+         * those that did not exist when the index was built.
+         */
+        private final List<Entry> directories = new ArrayList<>();
+
+        private void add(Entry entry)
+        {
+            entry.position = entries.size();
+            entries.add(entry);
+            if (entry.jar == null)
+            {
+                directories.add(entry);
+            }
+        }
+
+        private Entry[] getOwners(String name)
+        {
+            var owners = entriesByDirectory.get(getDirectory(name));
+            return owners == null ? new Entry[0] : owners;
+        }
+    }
+
+    /**
+     * A jar or directory of the class path.
+     */
+    private static class Entry
+    {
+        private final URL url;
+
+        private final File file;
+
+        /**
+         * The opened jar, {@code null} for a directory.
+         */
+        private final JarFile jar;
+
+        /**
+         * The position of the entry in the class path.
+         */
+        private int position;
+
+        private Manifest manifest;
+
+        private boolean manifestRead;
+
+        /**
+         * Whether the jar may be memory-mapped, cleared for signed jars while
+         * it is indexed.
+         */
+        private boolean mappable;
+
+        /**
+         * The memory-mapped jar, {@code null} if not mapped (yet).
+         */
+        private MappedJar mapped;
+
+        private boolean mappedRead;
+
+        private Entry(URL url, File file, JarFile jar, boolean mappable)
+        {
+            this.url = url;
+            this.file = file;
+            this.jar = jar;
+            this.mappable = mappable && !jar.isMultiRelease();
+        }
+
+        private synchronized MappedJar getMapped()
+        {
+            if (!mappedRead && mappable)
+            {
+                try
+                {
+                    mapped = MappedJar.open(file);
+                }
+                catch (IOException e)
+                {
+                    logger.log(Level.WARNING, "Could not map " + url, e);
+                }
+            }
+
+            mappedRead = true;
+            return mapped;
+        }
+
+        private synchronized Manifest getManifest()
+            throws IOException
+        {
+            if (!manifestRead && jar != null)
+            {
+                manifest = jar.getManifest();
+            }
+
+            manifestRead = true;
+            return manifest;
+        }
+
+        private Resource getResource(String name)
+        {
+            try
+            {
+                if (jar != null)
+                {
+                    var jarEntry = jar.getJarEntry(name);
+                    return jarEntry == null
+                        ? null
+                        : new Resource(this, new URL("jar:" + url + "!/"
+                            + encode(name)), jarEntry, null);
+                }
+
+                var f = new File(file, name);
+                return f.exists()
+                    && f.toPath().normalize().startsWith(file.toPath())
+                    ? new Resource(this, f.toURI().toURL(), null, f)
+                    : null;
+            }
+            catch (MalformedURLException | URISyntaxException e)
+            {
+                logger.log(Level.WARNING, "Invalid resource name " + name, e);
+                return null;
+            }
+            catch (IllegalStateException e)
+            {
+                // the jar was closed concurrently
+                return null;
+            }
+        }
+
+        private static String encode(String name)
+            throws URISyntaxException
+        {
+            return new URI(null, null, name, null).getRawPath();
+        }
+    }
+
+    /**
+     * A resource in a class path entry.
+     */
+    public static class Resource
+    {
+        private final Entry entry;
+
+        private final URL url;
+
+        private final JarEntry jarEntry;
+
+        private final File file;
+
+        private Resource(Entry entry, URL url, JarEntry jarEntry, File file)
+        {
+            this.entry = entry;
+            this.url = url;
+            this.jarEntry = jarEntry;
+            this.file = file;
+        }
+
+        /**
+         * Gets the URL of the resource.
+         *
+         * @return the URL.
+         */
+        public URL getUrl()
+        {
+            return url;
+        }
+
+        /**
+         * Gets the URL of the class path entry containing the resource.
+         *
+         * @return the URL of the jar or directory.
+         */
+        public URL getCodeSourceUrl()
+        {
+            return entry.url;
+        }
+
+        /**
+         * Gets the manifest of the jar containing the resource.
+         *
+         * @return the manifest, or {@code null} for a directory or a jar
+         * without a manifest.
+         * @throws IOException if the manifest cannot be read.
+         */
+        public Manifest getManifest()
+            throws IOException
+        {
+            return entry.getManifest();
+        }
+
+        /**
+         * Reads the content of the resource.
+         *
+         * @return the bytes.
+         * @throws IOException if the resource cannot be read.
+         */
+        public byte[] getBytes()
+            throws IOException
+        {
+            if (jarEntry == null)
+            {
+                return Files.readAllBytes(file.toPath());
+            }
+
+            try (var in = entry.jar.getInputStream(jarEntry))
+            {
+                return in.readAllBytes();
+            }
+        }
+
+        /**
+         * Gets the content of a class from the memory-mapped jar containing
+         * it, if the index maps jars.
+         *
+         * @return a buffer with the content between its position and limit,
+         * only valid until the calling thread reads the next class, or
+         * {@code null} if the resource is not in a mapped jar and has to be
+         * read with {@link #getBytes()}.
+         * @throws IOException if the resource cannot be read.
+         */
+        public ByteBuffer getByteBuffer()
+            throws IOException
+        {
+            var mapped = jarEntry == null ? null : entry.getMapped();
+            return mapped == null ? null : mapped.getClass(jarEntry.getName());
+        }
+
+        /**
+         * Gets the signers of a jar resource, after {@link #getBytes()}.
+         *
+         * @return the signers, or {@code null} if the resource is not signed.
+         */
+        public CodeSigner[] getCodeSigners()
+        {
+            return jarEntry == null ? null : jarEntry.getCodeSigners();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Reads the {@code DT_NEEDED} entries of an ELF shared object, the names of
+ * the libraries the dynamic linker loads with it, from its dynamic segment.
+ * Both classes and byte orders are understood. The string table is located
+ * through the virtual address in {@code DT_STRTAB}, which is translated to a
+ * file offset with the {@code PT_LOAD} segments.
+ */
+final class ElfFile
+{
+    private static final int PT_LOAD = 1;
+
+    private static final int PT_DYNAMIC = 2;
+
+    private static final long DT_NULL = 0;
+
+    private static final long DT_NEEDED = 1;
+
+    private static final long DT_STRTAB = 5;
+
+    private ElfFile()
+    {
+    }
+
+    /**
+     * Reads the libraries an ELF file needs.
+     *
+     * @param file the file.
+     * @return the names of the needed libraries in the order of the dynamic
+     * segment, or {@code null} if the file is not a valid ELF file.
+     * @throws IOException if the file cannot be read.
+     */
+    static List<String> readNeeded(Path file)
+        throws IOException
+    {
+        ByteBuffer elf;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            elf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(channel.size(), Integer.MAX_VALUE));
+        }
+
+        try
+        {
+            return readNeeded(elf);
+        }
+        catch (IndexOutOfBoundsException | IllegalArgumentException
+            | ArithmeticException e)
+        {
+            // truncated or corrupt
+            return null;
+        }
+    }
+
+    private static List<String> readNeeded(ByteBuffer elf)
+    {
+        if (elf.limit() < 16 || elf.getInt(0) != 0x7f454c46)
+        {
+            return null;
+        }
+
+        boolean is64;
+        switch (elf.get(4))
+        {
+        case 1:
+            is64 = false;
+            break;
+        case 2:
+            is64 = true;
+            break;
+        default:
+            return null;
+        }
+
+        switch (elf.get(5))
+        {
+        case 1:
+            elf.order(ByteOrder.LITTLE_ENDIAN);
+            break;
+        case 2:
+            elf.order(ByteOrder.BIG_ENDIAN);
+            break;
+        default:
+            return null;
+        }
+
+        long phoff = is64 ? elf.getLong(0x20) : Integer.toUnsignedLong(elf.getInt(0x1c));
+        int phentsize = Short.toUnsignedInt(elf.getShort(is64 ? 0x36 : 0x2a));
+        int phnum = Short.toUnsignedInt(elf.getShort(is64 ? 0x38 : 0x2c));
+
+        // (vaddr, offset, filesz) of the loaded segments
+        var loads = new ArrayList<long[]>();
+        long dynamicOffset = -1;
+        long dynamicSize = 0;
+        for (int i = 0; i < phnum; i++)
+        {
+            int ph = Math.toIntExact(phoff + (long) i * phentsize);
+            int type = elf.getInt(ph);
+            long offset = is64 ? elf.getLong(ph + 8) : Integer.toUnsignedLong(elf.getInt(ph + 4));
+            long vaddr = is64 ? elf.getLong(ph + 16) : Integer.toUnsignedLong(elf.getInt(ph + 8));
+            long filesz = is64 ? elf.getLong(ph + 32) : Integer.toUnsignedLong(elf.getInt(ph + 16));
+            if (type == PT_LOAD)
+            {
+                loads.add(new long[] { vaddr, offset, filesz });
+            }
+            else if (type == PT_DYNAMIC)
+            {
+                dynamicOffset = offset;
+                dynamicSize = filesz;
+            }
+        }
+
+        if (dynamicOffset < 0)
+        {
+            // statically linked
+            return Collections.emptyList();
+        }
+
+        var needed = new ArrayList<Long>();
+        long strtab = -1;
+        int entrySize = is64 ? 16 : 8;
+        for (long d = dynamicOffset;
+            d + entrySize <= dynamicOffset + dynamicSize;
+            d += entrySize)
+        {
+            int pos = Math.toIntExact(d);
+            long tag = is64 ? elf.getLong(pos) : elf.getInt(pos);
+            long value = is64 ? elf.getLong(pos + 8) : Integer.toUnsignedLong(elf.getInt(pos + 4));
+            if (tag == DT_NULL)
+            {
+                break;
+            }
+            else if (tag == DT_NEEDED)
+            {
+                needed.add(value);
+            }
+            else if (tag == DT_STRTAB)
+            {
+                strtab = value;
+            }
+        }
+
+        long strtabOffset = toOffset(loads, strtab);
+        if (strtabOffset < 0)
+        {
+            return needed.isEmpty() ? Collections.emptyList() : null;
+        }
+
+        var names = new ArrayList<String>(needed.size());
+        for (long name : needed)
+        {
+            names.add(readString(elf, Math.toIntExact(strtabOffset + name)));
+        }
+        return names;
+    }
+
+    private static long toOffset(List<long[]> loads, long vaddr)
+    {
+        for (long[] load : loads)
+        {
+            if (vaddr >= load[0] && vaddr < load[0] + load[2])
+            {
+                return vaddr - load[0] + load[1];
+            }
+        }
+
+        return -1;
+    }
+
+    private static String readString(ByteBuffer elf, int start)
+    {
+        int end = start;
+        while (elf.get(end) != 0)
+        {
+            end++;
+        }
+
+        var bytes = new byte[end - start];
+        elf.duplicate().position(start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import org.apache.commons.io.*;
+
+/**
+ * An immutable path trie over the entries of a bundle, built once from the
+ * entry names, e.g. the central directory of a jar, and answering the entry
+ * lookups of {@link BundleImpl} without touching the file system.
+ * Directories are part of the trie even if the bundle has no explicit entry
+ * for them.
+ * <p>
+ * The index of an exploded directory bundle records the modification time of
+ * every directory, which changes whenever an entry is added to or removed from
+ * it, so that {@link #isStale()} can detect changes with one stat per
+ * directory instead of a walk of the whole tree.
+ */
+class EntryIndex
+{
+    private static final Logger logger
+        = Logger.getLogger(EntryIndex.class.getName());
+
+    /**
+     * The URL prefix of all entries, e.g. {@code jar:file:/a.jar!/}.
+     */
+    private final String baseUrl;
+
+    /**
+     * How long a validated directory index is trusted without checking the
+     * file system again.
+     */
+    private static final long REVALIDATION_INTERVAL
+        = TimeUnit.SECONDS.toNanos(1);
+
+    private final Node root = new Node();
+
+    /**
+     * The modification times of the indexed directories, {@code null} for a
+     * jar.
+     */
+    private final Map<Path, FileTime> directoryTimes;
+
+    private volatile long validatedAt = System.nanoTime();
+
+    /**
+     * Creates the index of a jar.
+     *
+     * @param jar the jar file.
+     * @param names the names of the entries in the jar.
+     * @return the index.
+     */
+    static EntryIndex forJar(File jar, Collection<String> names)
+    {
+        return new EntryIndex("jar:" + jar.toURI() + "!/", names, null);
+    }
+
+    /**
+     * Creates the index of an exploded directory bundle by walking it once.
+     *
+     * @param dir the directory.
+     * @return the index.
+     * @throws IOException if the directory cannot be walked.
+     */
+    static EntryIndex forDirectory(File dir)
+        throws IOException
+    {
+        var root = dir.toPath();
+        var names = new ArrayList<String>();
+        var directoryTimes = new HashMap<Path, FileTime>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(
+                Path path,
+                BasicFileAttributes attrs)
+            {
+                directoryTimes.put(path, attrs.lastModifiedTime());
+                if (!path.equals(root))
+                {
+                    names.add(toName(root, path) + '/');
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(
+                Path path,
+                BasicFileAttributes attrs)
+            {
+                names.add(toName(root, path));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return new EntryIndex(dir.toURI().toString(), names, directoryTimes);
+    }
+
+    private static String toName(Path root, Path path)
+    {
+        return root.relativize(path).toString()
+            .replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Creates the index of entries relative to a base URL.
+     *
+     * @param baseUrl the URL prefix of the entries, ending with a slash.
+     * @param names the entry names, with a trailing slash for directories.
+     * @param directoryTimes the modification times of the directories to
+     * revalidate, or {@code null}.
+     */
+    private EntryIndex(
+        String baseUrl,
+        Collection<String> names,
+        Map<Path, FileTime> directoryTimes)
+    {
+        this.baseUrl = baseUrl;
+        this.directoryTimes = directoryTimes;
+        root.directory = true;
+        for (String name : names)
+        {
+            var node = root;
+            int start = 0;
+            while (start < name.length())
+            {
+                int end = name.indexOf('/', start);
+                var directory = end >= 0;
+                if (!directory)
+                {
+                    end = name.length();
+                }
+
+                if (end > start)
+                {
+                    node = node.child(name.substring(start, end));
+                    node.directory |= directory;
+                }
+                start = end + 1;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the indexed directory changed since the index was
+     * built. The file system is checked at most once per
+     * {@link #REVALIDATION_INTERVAL}, the index of a jar is never stale.
+     *
+     * @return {@code true} if the index must be rebuilt.
+     */
+    boolean isStale()
+    {
+        if (directoryTimes == null
+            || System.nanoTime() - validatedAt < REVALIDATION_INTERVAL)
+        {
+            return false;
+        }
+
+        for (var e : directoryTimes.entrySet())
+        {
+            try
+            {
+                if (!Files.getLastModifiedTime(e.getKey()).equals(e.getValue()))
+                {
+                    return true;
+                }
+            }
+            catch (IOException ex)
+            {
+                // deleted
+                return true;
+            }
+        }
+
+        validatedAt = System.nanoTime();
+        return false;
+    }
+
+    private Node find(String path)
+    {
+        var node = root;
+        for (String segment : path.split("/"))
+        {
+            if (segment.isEmpty())
+            {
+                continue;
+            }
+
+            node = node.children == null ? null : node.children.get(segment);
+            if (node == null)
+            {
+                return null;
+            }
+        }
+
+        return node;
+    }
+
+    private static String normalize(String path)
+    {
+        var start = 0;
+        while (start < path.length() && path.charAt(start) == '/')
+        {
+            start++;
+        }
+
+        var normalized = path.substring(start);
+        return normalized.isEmpty() || normalized.endsWith("/")
+            ? normalized
+            : normalized + '/';
+    }
+
+    /**
+     * Gets the URL of an entry.
+     *
+     * @param path the path of the entry, relative to the root.
+     * @return the URL, or {@code null} if there is no such entry.
+     */
+    URL getEntry(String path)
+    {
+        var node = find(path);
+        if (node == null)
+        {
+            return null;
+        }
+
+        var name = normalize(path);
+        return toUrl(node.directory
+            ? name
+            : name.substring(0, name.length() - 1));
+    }
+
+    /**
+     * Gets the paths of the direct children of a directory, with a trailing
+     * slash for directories.
+     *
+     * @param path the path of the directory.
+     * @return the paths, or {@code null} if the directory has no entries.
+     */
+    List<String> getEntryPaths(String path)
+    {
+        var node = find(path);
+        if (node == null || node.children == null)
+        {
+            return null;
+        }
+
+        var prefix = normalize(path);
+        var paths = new ArrayList<String>(node.children.size());
+        for (var e : node.children.entrySet())
+        {
+            paths.add(prefix + e.getKey()
+                + (e.getValue().directory ? "/" : ""));
+        }
+        return paths;
+    }
+
+    /**
+     * Finds the entries below a directory whose last path segment matches a
+     * wildcard pattern.
+     *
+     * @param path the path of the directory to search.
+     * @param filePattern the pattern, with {@code *} matching any characters,
+     * or {@code null} for all entries.
+     * @param recurse whether to also search the subdirectories.
+     * @return the URLs of the matching entries.
+     */
+    List<URL> findEntries(String path, String filePattern, boolean recurse)
+    {
+        var node = find(path);
+        if (node == null)
+        {
+            return Collections.emptyList();
+        }
+
+        var matches = new ArrayList<URL>();
+        collect(node, normalize(path),
+            filePattern == null ? "*" : filePattern, recurse, matches);
+        return matches;
+    }
+
+    private void collect(
+        Node node,
+        String prefix,
+        String filePattern,
+        boolean recurse,
+        List<URL> matches)
+    {
+        if (node.children == null)
+        {
+            return;
+        }
+
+        for (var e : node.children.entrySet())
+        {
+            var child = e.getValue();
+            var name = prefix + e.getKey() + (child.directory ? "/" : "");
+            if (FilenameUtils.wildcardMatch(e.getKey(), filePattern))
+            {
+                var url = toUrl(name);
+                if (url != null)
+                {
+                    matches.add(url);
+                }
+            }
+
+            if (recurse && child.directory)
+            {
+                collect(child, name, filePattern, true, matches);
+            }
+        }
+    }
+
+    private URL toUrl(String name)
+    {
+        try
+        {
+            return new URL(baseUrl + encode(name));
+        }
+        catch (MalformedURLException | URISyntaxException e)
+        {
+            logger.log(Level.WARNING, "Invalid entry " + name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Quotes the characters of an entry name that are not allowed in a URL
+     * path, e.g. {@code #}, {@code %}, {@code ?} and spaces. The leading
+     * slash keeps a colon in the first segment from being parsed as a
+     * scheme.
+     */
+    private static String encode(String name)
+        throws URISyntaxException
+    {
+        return new URI(null, null, '/' + name, null).getRawPath().substring(1);
+    }
+
+    private static class Node
+    {
+        private Map<String, Node> children;
+
+        private boolean directory;
+
+        private Node child(String name)
+        {
+            if (children == null)
+            {
+                children = new LinkedHashMap<>();
+            }
+
+            return children.computeIfAbsent(name, k -> new Node());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * A jar mapped into memory once, with an index of the class entries read from
+ * its central directory, to define classes directly from the mapping instead
+ * of copying them through the heap buffers of a {@link java.util.jar.JarFile}.
+ * Stored entries are returned as slices of the mapping, deflated entries are
+ * inflated into a direct buffer that is reused by the calling thread.
+ * <p>
+ * Only the plain zip format is understood. {@link #open(File)} returns
+ * {@code null} for ZIP64 archives and jars that are larger than a single
+ * mapping, which are then read the usual way.
+ */
+class MappedJar
+{
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final int CENTRAL_SIZE = 46;
+
+    private static final int LOCAL_SIZE = 30;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> inflaters
+        = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * The buffer of the calling thread that entries are inflated into, grown
+     * to the largest class it inflated.
+     */
+    private static final ThreadLocal<ByteBuffer> buffers
+        = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(16 * 1024));
+
+    private final ByteBuffer mapping;
+
+    private final Map<String, Location> classes;
+
+    private MappedJar(ByteBuffer mapping, Map<String, Location> classes)
+    {
+        this.mapping = mapping;
+        this.classes = classes;
+    }
+
+    /**
+     * Maps a jar and reads the class entries of its central directory.
+     *
+     * @param file the jar.
+     * @return the mapped jar, or {@code null} if it cannot be mapped.
+     * @throws IOException if the jar cannot be read.
+     */
+    static MappedJar open(File file)
+        throws IOException
+    {
+        ByteBuffer mapping;
+        try (var channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                return null;
+            }
+
+            // the mapping remains valid after the channel is closed
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                channel.size());
+        }
+
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        var end = findEnd(mapping);
+        if (end < 0)
+        {
+            return null;
+        }
+
+        var count = mapping.getShort(end + 10) & 0xffff;
+        var offset = mapping.getInt(end + 16);
+        if (count == 0xffff || offset == -1)
+        {
+            // ZIP64
+            return null;
+        }
+
+        var classes = new HashMap<String, Location>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++)
+        {
+            if (offset < 0 || offset + CENTRAL_SIZE > mapping.limit()
+                || mapping.getInt(offset) != CENTRAL_SIGNATURE)
+            {
+                throw new ZipException("Invalid central directory in " + file);
+            }
+
+            var flags = mapping.getShort(offset + 8);
+            var method = mapping.getShort(offset + 10) & 0xffff;
+            var compressedSize = mapping.getInt(offset + 20);
+            var size = mapping.getInt(offset + 24);
+            var nameLength = mapping.getShort(offset + 28) & 0xffff;
+            var extraLength = mapping.getShort(offset + 30) & 0xffff;
+            var commentLength = mapping.getShort(offset + 32) & 0xffff;
+            var localOffset = mapping.getInt(offset + 42);
+            var name = decode(mapping, offset + CENTRAL_SIZE, nameLength);
+            if (name.endsWith(".class")
+                && (flags & 1) == 0
+                && (method == STORED || method == DEFLATED)
+                && compressedSize >= 0 && size >= 0 && localOffset >= 0)
+            {
+                classes.put(name,
+                    new Location(localOffset, compressedSize, size, method));
+            }
+
+            offset += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return new MappedJar(mapping, classes);
+    }
+
+    private static int findEnd(ByteBuffer mapping)
+    {
+        var min = Math.max(0, mapping.limit() - END_SIZE - 0xffff);
+        for (int i = mapping.limit() - END_SIZE; i >= min; i--)
+        {
+            if (mapping.getInt(i) == END_SIGNATURE)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static String decode(ByteBuffer mapping, int offset, int length)
+    {
+        var bytes = new byte[length];
+        mapping.duplicate().position(offset).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the content of a class entry.
+     *
+     * @param name the name of the entry.
+     * @return a buffer with the content between its position and limit, only
+     * valid until the calling thread inflates the next entry, or {@code null}
+     * if there is no such entry.
+     * @throws IOException if the entry is corrupt.
+     */
+    ByteBuffer getClass(String name)
+        throws IOException
+    {
+        var location = classes.get(name);
+        if (location == null)
+        {
+            return null;
+        }
+
+        var header = location.localOffset;
+        if (header + LOCAL_SIZE > mapping.limit()
+            || mapping.getInt(header) != LOCAL_SIGNATURE)
+        {
+            throw new ZipException("Invalid local header of " + name);
+        }
+
+        var start = header + LOCAL_SIZE
+            + (mapping.getShort(header + 26) & 0xffff)
+            + (mapping.getShort(header + 28) & 0xffff);
+        if ((long) start + location.compressedSize > mapping.limit())
+        {
+            throw new ZipException("Truncated entry " + name);
+        }
+
+        var data = mapping.duplicate()
+            .position(start)
+            .limit(start + location.compressedSize);
+        if (location.method == STORED)
+        {
+            return data.slice();
+        }
+
+        var buffer = buffers.get();
+        if (buffer.capacity() < location.size)
+        {
+            buffer = ByteBuffer.allocateDirect(location.size);
+            buffers.set(buffer);
+        }
+
+        buffer.clear().limit(location.size);
+        var inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(data);
+        try
+        {
+            while (buffer.hasRemaining() && !inflater.finished())
+            {
+                if (inflater.inflate(buffer) == 0
+                    && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new ZipException("Invalid deflated data of " + name
+                + ": " + e.getMessage());
+        }
+
+        if (buffer.hasRemaining())
+        {
+            throw new ZipException("Truncated deflated data of " + name);
+        }
+
+        return buffer.flip();
+    }
+
+    private static class Location
+    {
+        private final int localOffset;
+
+        private final int compressedSize;
+
+        private final int size;
+
+        private final int method;
+
+        private Location(
+            int localOffset,
+            int compressedSize,
+            int size,
+            int method)
+        {
+            this.localOffset = localOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.method = method;
+        }
+    }
+}
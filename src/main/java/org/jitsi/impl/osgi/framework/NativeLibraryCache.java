@@ -0,0 +1,490 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import org.apache.commons.io.*;
+import org.jitsi.impl.osgi.framework.storage.*;
+
+/**
+ * A persistent cache of the native libraries extracted from bundles, shared
+ * by all class loaders, framework restarts and processes using the same
+ * directory.
+ * <p>
+ * Every library is extracted once into {@code objects/}, under the SHA-256
+ * hash of its content, with a temporary file that is atomically renamed.
+ * The hash of a library in a jar or directory is remembered in
+ * {@code sources/} under the location, size and modification time of its
+ * source, so that an unchanged library is neither read nor written again.
+ * A class loader gets a {@code run-<pid>-*} directory with hard links to the
+ * objects, named like the libraries, so that libraries of the same bundle
+ * still find each other in the same directory.
+ * <p>
+ * Entries are removed by {@link #cleanup()}: run directories of processes
+ * that are gone, and objects and sources unused for {@link #MAX_AGE}. An
+ * object that is still linked from a run directory is kept. A process that
+ * loses the race against the removal of an object extracts it again.
+ */
+class NativeLibraryCache
+{
+    private static final Logger logger
+        = Logger.getLogger(NativeLibraryCache.class.getName());
+
+    /**
+     * How long an unused object or source is kept.
+     */
+    static final Duration MAX_AGE = Duration.ofDays(30);
+
+    private static final String RUN_PREFIX = "run-";
+
+    private static final String TEMP_PREFIX = ".extract-";
+
+    /**
+     * The caches of this process by directory, so that every directory is
+     * cleaned up once.
+     */
+    private static final Map<Path, NativeLibraryCache> caches
+        = new ConcurrentHashMap<>();
+
+    private final Path objects;
+
+    private final Path sources;
+
+    private final Path root;
+
+    private NativeLibraryCache(Path root)
+    {
+        this.root = root;
+        this.objects = root.resolve("objects");
+        this.sources = root.resolve("sources");
+    }
+
+    /**
+     * Gets the cache in a directory, removing its stale entries in the
+     * background on first use in this process.
+     *
+     * @param dir the directory of the cache.
+     * @param executor the executor to remove the stale entries on.
+     * @return the cache.
+     */
+    static NativeLibraryCache forDirectory(Path dir, Executor executor)
+    {
+        return caches.computeIfAbsent(dir.toAbsolutePath().normalize(), d ->
+        {
+            var cache = new NativeLibraryCache(d);
+            try
+            {
+                executor.execute(cache::cleanup);
+            }
+            catch (RejectedExecutionException e)
+            {
+                logger.log(Level.FINE, "Not cleaning up " + d, e);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * Gets the default cache directory outside a framework storage area, in
+     * the temporary directory and private to the current user.
+     *
+     * @return the directory, or {@code null} if it exists but is not
+     * private to the current user.
+     */
+    static Path getDefaultDirectory()
+    {
+        var dir = Paths.get(System.getProperty("java.io.tmpdir"),
+            "jitsi-native-" + System.getProperty("user.name"));
+        try
+        {
+            var posix = dir.getFileSystem().supportedFileAttributeViews()
+                .contains("posix");
+            if (posix)
+            {
+                Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rwx------")));
+                var owner = dir.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+                var attributes = Files.readAttributes(dir,
+                    PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!attributes.isDirectory()
+                    || !attributes.owner().equals(owner)
+                    || !attributes.permissions().equals(
+                        PosixFilePermissions.fromString("rwx------")))
+                {
+                    logger.warning("Not using native library cache " + dir
+                        + ", it is not private to the current user");
+                    return null;
+                }
+            }
+            else
+            {
+                Files.createDirectories(dir);
+            }
+
+            return dir;
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING,
+                "Could not create native library cache " + dir, e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates a directory for the libraries of a class loader. It is
+     * removed by the caller when done, or by {@link #cleanup()} after this
+     * process exited.
+     *
+     * @return the directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    Path createRunDirectory()
+        throws IOException
+    {
+        Files.createDirectories(root);
+        return Files.createTempDirectory(root,
+            RUN_PREFIX + ProcessHandle.current().pid() + '-');
+    }
+
+    /**
+     * Puts a library into a run directory, extracting it into the cache only
+     * if its content is not there yet.
+     *
+     * @param source the URL of the library in its bundle.
+     * @param runDir the run directory of the class loader.
+     * @param name the file name of the library.
+     * @return the library in the run directory.
+     * @throws IOException if the library cannot be extracted.
+     */
+    Path link(URL source, Path runDir, String name)
+        throws IOException
+    {
+        var target = runDir.resolve(name);
+        var sourceKey = getSourceKey(source);
+        var hash = sourceKey == null ? null : readSourceHash(sourceKey);
+        for (int attempt = 0; ; attempt++)
+        {
+            if (hash == null || !Files.isRegularFile(objects.resolve(hash)))
+            {
+                hash = extract(source);
+                if (sourceKey != null)
+                {
+                    writeSourceHash(sourceKey, hash);
+                }
+            }
+
+            try
+            {
+                linkOrCopy(objects.resolve(hash), target);
+                return target;
+            }
+            catch (NoSuchFileException e)
+            {
+                // removed by the cleanup of another process
+                if (attempt > 0)
+                {
+                    throw e;
+                }
+                hash = null;
+            }
+        }
+    }
+
+    /**
+     * Computes the key of a library source from its location and the size
+     * and modification time of the file it is in.
+     *
+     * @return the key, or {@code null} if the source is not a local file.
+     */
+    private static String getSourceKey(URL source)
+    {
+        var location = source.toString();
+        var file = location.startsWith("jar:")
+            ? FrameworkStorage.toFile(
+                location.substring(4, location.lastIndexOf("!/")))
+            : FrameworkStorage.toFile(location);
+        if (file == null || !file.isFile())
+        {
+            return null;
+        }
+
+        return sha256(location + '\n' + file.length() + '\n'
+            + file.lastModified());
+    }
+
+    private String readSourceHash(String sourceKey)
+    {
+        try
+        {
+            var hash = Files.readString(sources.resolve(sourceKey)).trim();
+            return hash.isEmpty() ? null : hash;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    private void writeSourceHash(String sourceKey, String hash)
+    {
+        try
+        {
+            Files.createDirectories(sources);
+            var tmp = Files.createTempFile(sources, TEMP_PREFIX, ".tmp");
+            Files.writeString(tmp, hash);
+            moveAtomically(tmp, sources.resolve(sourceKey));
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.FINE, "Could not remember hash of native library",
+                e);
+        }
+    }
+
+    /**
+     * Extracts a library into the objects of the cache.
+     *
+     * @return the hash of the content of the library.
+     */
+    private String extract(URL source)
+        throws IOException
+    {
+        Files.createDirectories(objects);
+        var tmp = Files.createTempFile(objects, TEMP_PREFIX, ".tmp");
+        try
+        {
+            var digest = newDigest();
+            var connection = source.openConnection();
+            // do not keep the jar open in the cache of the jar: handler
+            connection.setUseCaches(false);
+            try (var in = Channels.newChannel(new DigestInputStream(
+                    connection.getInputStream(), digest));
+                var out = FileChannel.open(tmp, StandardOpenOption.WRITE))
+            {
+                long position = 0;
+                long transferred;
+                while ((transferred
+                    = out.transferFrom(in, position, 1 << 20)) > 0)
+                {
+                    position += transferred;
+                }
+            }
+
+            var hash = toHex(digest.digest());
+            var object = objects.resolve(hash);
+            // a rename would replace an object that may be linked already
+            if (!Files.exists(object))
+            {
+                moveAtomically(tmp, object);
+            }
+            return hash;
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target)
+        throws IOException
+    {
+        try
+        {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (FileAlreadyExistsException e)
+        {
+            // the same content, moved there by another process
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void linkOrCopy(Path object, Path target)
+        throws IOException
+    {
+        Files.deleteIfExists(target);
+        try
+        {
+            Files.createLink(target, object);
+        }
+        catch (NoSuchFileException e)
+        {
+            throw e;
+        }
+        catch (UnsupportedOperationException | FileSystemException e)
+        {
+            try (var in = FileChannel.open(object, StandardOpenOption.READ);
+                var out = FileChannel.open(target,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+            {
+                long position = 0;
+                long size = in.size();
+                while (position < size)
+                {
+                    position += in.transferTo(position, size - position, out);
+                }
+            }
+        }
+
+        try
+        {
+            // marks the object as used for the cleanup
+            Files.setLastModifiedTime(object, FileTime.from(Instant.now()));
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.FINE, "Could not touch " + object, e);
+        }
+    }
+
+    /**
+     * Removes the run directories of processes that are gone, and the
+     * objects and sources that were not used for {@link #MAX_AGE}. Objects
+     * that are still linked from a run directory are kept.
+     */
+    void cleanup()
+    {
+        var now = Instant.now();
+        try (var dirs = Files.newDirectoryStream(root, RUN_PREFIX + "*"))
+        {
+            for (Path dir : dirs)
+            {
+                if (!isAlive(dir.getFileName().toString()))
+                {
+                    FileUtils.deleteQuietly(dir.toFile());
+                }
+            }
+        }
+        catch (NoSuchFileException e)
+        {
+            return;
+        }
+        catch (IOException | DirectoryIteratorException e)
+        {
+            logger.log(Level.FINE, "Could not clean up " + root, e);
+        }
+
+        removeUnused(objects, now);
+        removeUnused(sources, now);
+    }
+
+    private static boolean isAlive(String runDirName)
+    {
+        var end = runDirName.indexOf('-', RUN_PREFIX.length());
+        try
+        {
+            return ProcessHandle.of(Long.parseLong(
+                    runDirName.substring(RUN_PREFIX.length(), end)))
+                .map(ProcessHandle::isAlive)
+                .orElse(false);
+        }
+        catch (NumberFormatException | IndexOutOfBoundsException e)
+        {
+            // not a run directory of this cache
+            return true;
+        }
+    }
+
+    private static void removeUnused(Path dir, Instant now)
+    {
+        try (var files = Files.newDirectoryStream(dir))
+        {
+            for (Path file : files)
+            {
+                var lastModified = Files.getLastModifiedTime(file).toInstant();
+                var temp = file.getFileName().toString()
+                    .startsWith(TEMP_PREFIX);
+                // an interrupted extraction is abandoned after a day
+                var maxAge = temp ? Duration.ofDays(1) : MAX_AGE;
+                if (lastModified.plus(maxAge).isBefore(now)
+                    && !isLinked(file))
+                {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        catch (NoSuchFileException e)
+        {
+            // nothing cached yet
+        }
+        catch (IOException | DirectoryIteratorException e)
+        {
+            logger.log(Level.FINE, "Could not clean up " + dir, e);
+        }
+    }
+
+    /**
+     * Checks whether a file has other hard links, i.e. is in use by a run
+     * directory. File systems without link counts report no links.
+     */
+    private static boolean isLinked(Path file)
+    {
+        try
+        {
+            var links = Files.getAttribute(file, "unix:nlink");
+            return links instanceof Integer && (Integer) links > 1;
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException
+            | IOException e)
+        {
+            return false;
+        }
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // required of every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256(String s)
+    {
+        return toHex(newDigest().digest(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        var hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                .append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
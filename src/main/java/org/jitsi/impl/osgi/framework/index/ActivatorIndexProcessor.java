@@ -0,0 +1,289 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.index;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.stream.*;
+import javax.annotation.processing.*;
+import javax.lang.model.*;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.*;
+import javax.tools.*;
+import org.jitsi.osgi.framework.*;
+
+/**
+ * Generates the {@link ActivatorIndex#RESOURCE} index of the classes
+ * annotated with {@link IndexedActivator}. It is not registered as a service,
+ * so that compiling against this artifact does not run it. It is enabled by
+ * adding this artifact to the {@code annotationProcessorPaths} of the
+ * {@code maven-compiler-plugin} and this class to its
+ * {@code annotationProcessors}.
+ * <p>
+ * On an incremental compilation, the entries of the existing index are kept
+ * for the activators that were not recompiled and are still annotated.
+ */
+@SupportedAnnotationTypes(ActivatorIndexProcessor.ANNOTATION)
+public class ActivatorIndexProcessor
+    extends AbstractProcessor
+{
+    static final String ANNOTATION = "org.jitsi.osgi.framework.IndexedActivator";
+
+    private static final String BUNDLE_ACTIVATOR
+        = "org.osgi.framework.BundleActivator";
+
+    /**
+     * The index lines by the binary name of the activator.
+     */
+    private final Map<String, String> entries = new TreeMap<>();
+
+    private boolean existingIndexRead;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(
+        Set<? extends TypeElement> annotations,
+        RoundEnvironment roundEnv)
+    {
+        if (!existingIndexRead)
+        {
+            existingIndexRead = true;
+            readExistingIndex();
+        }
+
+        if (roundEnv.processingOver())
+        {
+            writeIndex();
+            return false;
+        }
+
+        var annotation = processingEnv.getElementUtils()
+            .getTypeElement(ANNOTATION);
+        if (annotation == null)
+        {
+            // nothing can be annotated without the annotation
+            return false;
+        }
+
+        for (Element element
+            : roundEnv.getElementsAnnotatedWith(annotation))
+        {
+            var type = (TypeElement) element;
+            if (isValid(type))
+            {
+                var name = processingEnv.getElementUtils()
+                    .getBinaryName(type).toString();
+                entries.put(name, toIndexLine(name, getAnnotation(type)));
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isValid(TypeElement type)
+    {
+        var messager = processingEnv.getMessager();
+        var modifiers = type.getModifiers();
+        if (type.getKind() != ElementKind.CLASS
+            || !modifiers.contains(Modifier.PUBLIC)
+            || modifiers.contains(Modifier.ABSTRACT)
+            || (type.getNestingKind() == NestingKind.MEMBER
+                && !modifiers.contains(Modifier.STATIC)))
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                "@IndexedActivator requires a public, concrete, top-level or"
+                    + " static class", type);
+            return false;
+        }
+
+        var types = processingEnv.getTypeUtils();
+        var bundleActivator = processingEnv.getElementUtils()
+            .getTypeElement(BUNDLE_ACTIVATOR);
+        if (bundleActivator == null)
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                "@IndexedActivator requires " + BUNDLE_ACTIVATOR
+                    + " on the compile class path", type);
+            return false;
+        }
+
+        if (!types.isAssignable(type.asType(),
+            types.erasure(bundleActivator.asType())))
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                "@IndexedActivator requires an implementation of "
+                    + BUNDLE_ACTIVATOR, type);
+            return false;
+        }
+
+        var hasConstructor = ElementFilter
+            .constructorsIn(type.getEnclosedElements())
+            .stream()
+            .anyMatch(c -> c.getParameters().isEmpty()
+                && c.getModifiers().contains(Modifier.PUBLIC));
+        if (!hasConstructor)
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                "@IndexedActivator requires a public no-argument constructor",
+                type);
+            return false;
+        }
+
+        var startLevel = (Integer) getValue(getAnnotation(type), "startLevel");
+        if (startLevel < 1)
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                "@IndexedActivator start level must be at least 1", type);
+            return false;
+        }
+
+        return true;
+    }
+
+    private AnnotationMirror getAnnotation(TypeElement type)
+    {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors())
+        {
+            var annotationType
+                = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(ANNOTATION))
+            {
+                return mirror;
+            }
+        }
+
+        return null;
+    }
+
+    private Object getValue(AnnotationMirror mirror, String name)
+    {
+        var values
+            = processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        for (var e : values.entrySet())
+        {
+            if (e.getKey().getSimpleName().contentEquals(name))
+            {
+                return e.getValue().getValue();
+            }
+        }
+
+        return null;
+    }
+
+    private String toIndexLine(String name, AnnotationMirror mirror)
+    {
+        var line = new StringBuilder(name)
+            .append(';')
+            .append(ActivatorIndex.START_LEVEL)
+            .append('=')
+            .append(getValue(mirror, "startLevel"));
+        if ((Boolean) getValue(mirror, "lazy"))
+        {
+            line.append(';').append(ActivatorIndex.LAZY).append("=true");
+        }
+
+        appendServices(line, ActivatorIndex.REQUIRES,
+            getValue(mirror, "requires"));
+        appendServices(line, ActivatorIndex.PROVIDES,
+            getValue(mirror, "provides"));
+        return line.toString();
+    }
+
+    private void appendServices(StringBuilder line, String key, Object value)
+    {
+        @SuppressWarnings("unchecked")
+        var classes = (List<? extends AnnotationValue>) value;
+        if (classes.isEmpty())
+        {
+            return;
+        }
+
+        var elements = processingEnv.getElementUtils();
+        line.append(';')
+            .append(key)
+            .append('=')
+            .append(classes.stream()
+                .map(c -> (TypeElement) ((DeclaredType) c.getValue()).asElement())
+                .map(t -> elements.getBinaryName(t).toString())
+                .collect(Collectors.joining(",")));
+    }
+
+    private void readExistingIndex()
+    {
+        var elements = processingEnv.getElementUtils();
+        try
+        {
+            var resource = processingEnv.getFiler().getResource(
+                StandardLocation.CLASS_OUTPUT, "", ActivatorIndex.RESOURCE);
+            try (var reader = new BufferedReader(new InputStreamReader(
+                resource.openInputStream(), StandardCharsets.UTF_8)))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (line.isEmpty() || line.startsWith("#"))
+                    {
+                        continue;
+                    }
+
+                    var name = line.split(";", 2)[0];
+                    var type = elements.getTypeElement(name.replace('$', '.'));
+                    if (type != null && getAnnotation(type) != null)
+                    {
+                        entries.put(name, line);
+                    }
+                }
+            }
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            // no index from a previous compilation
+        }
+    }
+
+    private void writeIndex()
+    {
+        if (entries.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            var resource = processingEnv.getFiler().createResource(
+                StandardLocation.CLASS_OUTPUT, "", ActivatorIndex.RESOURCE);
+            try (var writer = new PrintWriter(new OutputStreamWriter(
+                resource.openOutputStream(), StandardCharsets.UTF_8)))
+            {
+                writer.println("# Generated by "
+                    + ActivatorIndexProcessor.class.getName());
+                entries.values().forEach(writer::println);
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Could not write " + ActivatorIndex.RESOURCE + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.launch;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import java.util.stream.*;
+import org.jitsi.impl.osgi.framework.*;
+import org.osgi.framework.*;
+import org.osgi.framework.startlevel.*;
+
+/**
+ * Starts the bundles of a single start level in the order implied by the
+ * services they declare as required and provided through
+ * {@link org.jitsi.osgi.framework.BundleActivatorHolder}. A bundle is started
+ * as soon as every service it requires is registered, or every bundle of the
+ * level that declares to provide it has completed its start.
+ * <p>
+ * Requirements that no bundle of the level provides, and dependency cycles,
+ * are reported as diagnostics and do not delay the start of a bundle.
+ */
+class ActivationScheduler
+{
+    private static final Logger logger
+        = Logger.getLogger(ActivationScheduler.class.getName());
+
+    private final int startLevel;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    private final Deque<Node> ready = new ArrayDeque<>();
+
+    private final List<String> diagnostics = new ArrayList<>();
+
+    private final Map<BundleImpl, Throwable> failures = new LinkedHashMap<>();
+
+    private int completed;
+
+    /**
+     * Creates the dependency graph for the bundles of a start level.
+     *
+     * @param framework the framework the bundles are installed in.
+     * @param startLevel the start level that is being entered.
+     * @param bundles the bundles of the start level.
+     */
+    ActivationScheduler(
+        FrameworkImpl framework,
+        int startLevel,
+        List<BundleImpl> bundles)
+    {
+        this.startLevel = startLevel;
+
+        var providers = new HashMap<String, List<Node>>();
+        for (BundleImpl bundle : bundles)
+        {
+            var node = new Node(bundle);
+            nodes.add(node);
+            for (String service : bundle.getProvidedServices())
+            {
+                providers.computeIfAbsent(service, k -> new ArrayList<>())
+                    .add(node);
+            }
+        }
+
+        for (Node node : nodes)
+        {
+            for (String service : node.bundle.getRequiredServices())
+            {
+                if (framework.isServiceRegistered(service))
+                {
+                    continue;
+                }
+
+                var serviceProviders = new ArrayList<>(
+                    providers.getOrDefault(service, Collections.emptyList()));
+                serviceProviders.remove(node);
+                if (serviceProviders.isEmpty())
+                {
+                    diagnostics.add(describeMissing(framework, node, service));
+                }
+                else
+                {
+                    node.pending.put(service, serviceProviders);
+                }
+            }
+        }
+
+        breakCycles();
+        for (Node node : nodes)
+        {
+            for (List<Node> serviceProviders : node.pending.values())
+            {
+                for (Node provider : serviceProviders)
+                {
+                    if (!provider.dependents.contains(node))
+                    {
+                        provider.dependents.add(node);
+                    }
+                }
+            }
+
+            if (node.pending.isEmpty())
+            {
+                node.queued = true;
+                ready.add(node);
+            }
+        }
+    }
+
+    private String describeMissing(
+        FrameworkImpl framework,
+        Node node,
+        String service)
+    {
+        var message = new StringBuilder("Bundle ")
+            .append(node.bundle.getLocation())
+            .append(" at start level ")
+            .append(startLevel)
+            .append(" requires service ")
+            .append(service)
+            .append(", which is neither registered nor provided by another"
+                + " bundle of the same start level");
+        for (Bundle bundle : framework.getBundles())
+        {
+            if (bundle instanceof BundleImpl
+                && bundle != node.bundle
+                && ((BundleImpl) bundle).getProvidedServices()
+                    .contains(service))
+            {
+                message.append("; it is provided by ")
+                    .append(bundle.getLocation())
+                    .append(" at start level ")
+                    .append(bundle.adapt(BundleStartLevel.class)
+                        .getStartLevel());
+            }
+        }
+
+        return message.toString();
+    }
+
+    /**
+     * Finds the strongly connected components of the dependency graph and
+     * removes the requirements between the members of each cycle, so that the
+     * cycle cannot block the start level.
+     */
+    private void breakCycles()
+    {
+        var tarjan = new Tarjan();
+        for (Node node : nodes)
+        {
+            if (node.index < 0)
+            {
+                tarjan.visit(node);
+            }
+        }
+
+        for (List<Node> component : tarjan.components)
+        {
+            if (component.size() < 2)
+            {
+                continue;
+            }
+
+            diagnostics.add("Dependency cycle between bundles at start level "
+                + startLevel + ": "
+                + Stream.concat(
+                        component.stream(), Stream.of(component.get(0)))
+                    .map(n -> n.bundle.getLocation())
+                    .collect(Collectors.joining(" -> ")));
+            for (Node node : component)
+            {
+                node.pending.values().removeIf(serviceProviders ->
+                {
+                    serviceProviders.removeAll(component);
+                    return serviceProviders.isEmpty();
+                });
+            }
+        }
+    }
+
+    /**
+     * Gets the problems found in the declared dependencies, such as missing
+     * providers or cycles.
+     *
+     * @return the human-readable diagnostics.
+     */
+    List<String> getDiagnostics()
+    {
+        return diagnostics;
+    }
+
+    /**
+     * Gets the bundles that failed to start, available after {@link #run}.
+     *
+     * @return the failed bundles mapped to the exception thrown by their
+     * start.
+     */
+    synchronized Map<BundleImpl, Throwable> getFailures()
+    {
+        return new LinkedHashMap<>(failures);
+    }
+
+    /**
+     * Starts all bundles, each as soon as its requirements are met, and waits
+     * until all of them have either started or failed.
+     *
+     * @param executor the executor running the bundle starts.
+     * @throws InterruptedException if the calling thread was interrupted while
+     * waiting for the bundles.
+     */
+    void run(Executor executor)
+        throws InterruptedException
+    {
+        while (true)
+        {
+            Node node;
+            synchronized (this)
+            {
+                while (ready.isEmpty() && completed < nodes.size())
+                {
+                    wait();
+                }
+
+                if (completed == nodes.size())
+                {
+                    return;
+                }
+
+                node = ready.poll();
+            }
+
+            try
+            {
+                executor.execute(() -> start(node));
+            }
+            catch (RejectedExecutionException ree)
+            {
+                completed(node, ree);
+            }
+        }
+    }
+
+    private void start(Node node)
+    {
+        Throwable failure = null;
+        try
+        {
+            node.bundle.start(
+                Bundle.START_TRANSIENT | Bundle.START_ACTIVATION_POLICY);
+        }
+        catch (Exception e)
+        {
+            failure = e;
+        }
+        finally
+        {
+            completed(node, failure);
+        }
+    }
+
+    private synchronized void completed(Node node, Throwable failure)
+    {
+        if (failure != null)
+        {
+            failures.put(node.bundle, failure);
+        }
+
+        node.done = true;
+        completed++;
+        for (Node dependent : node.dependents)
+        {
+            var it = dependent.pending.entrySet().iterator();
+            while (it.hasNext())
+            {
+                var requirement = it.next();
+                if (requirement.getValue().stream().allMatch(n -> n.done))
+                {
+                    logger.warning("Starting " + dependent.bundle.getLocation()
+                        + " without required service " + requirement.getKey()
+                        + ", its providers did not register it");
+                    it.remove();
+                }
+            }
+
+            markReadyIfSatisfied(dependent);
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Notifies the scheduler that services have been registered, which may
+     * make bundles waiting for them ready to start.
+     *
+     * @param classNames the names under which the service was registered.
+     */
+    synchronized void serviceRegistered(String[] classNames)
+    {
+        for (Node node : nodes)
+        {
+            if (!node.pending.isEmpty())
+            {
+                for (String className : classNames)
+                {
+                    node.pending.remove(className);
+                }
+
+                markReadyIfSatisfied(node);
+            }
+        }
+    }
+
+    private void markReadyIfSatisfied(Node node)
+    {
+        if (node.pending.isEmpty() && !node.queued)
+        {
+            node.queued = true;
+            ready.add(node);
+            notifyAll();
+        }
+    }
+
+    private static class Node
+    {
+        private final BundleImpl bundle;
+
+        /**
+         * The required services that are not yet registered, mapped to the
+         * bundles of the level that declare to provide them.
+         */
+        private final Map<String, List<Node>> pending = new LinkedHashMap<>();
+
+        private final List<Node> dependents = new ArrayList<>();
+
+        private boolean queued;
+
+        private boolean done;
+
+        private int index = -1;
+
+        private int lowLink;
+
+        private boolean onStack;
+
+        private Node(BundleImpl bundle)
+        {
+            this.bundle = bundle;
+        }
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm over the edges from a
+     * bundle to the providers of its required services.
+     */
+    private static class Tarjan
+    {
+        private final Deque<Node> stack = new ArrayDeque<>();
+
+        private final List<List<Node>> components = new ArrayList<>();
+
+        private int index;
+
+        private void visit(Node node)
+        {
+            node.index = index;
+            node.lowLink = index;
+            index++;
+            stack.push(node);
+            node.onStack = true;
+
+            for (List<Node> serviceProviders : node.pending.values())
+            {
+                for (Node provider : serviceProviders)
+                {
+                    if (provider.index < 0)
+                    {
+                        visit(provider);
+                        node.lowLink = Math.min(node.lowLink, provider.lowLink);
+                    }
+                    else if (provider.onStack)
+                    {
+                        node.lowLink = Math.min(node.lowLink, provider.index);
+                    }
+                }
+            }
+
+            if (node.lowLink == node.index)
+            {
+                var component = new ArrayList<Node>();
+                Node member;
+                do
+                {
+                    member = stack.pop();
+                    member.onStack = false;
+                    component.add(member);
+                }
+                while (member != node);
+                Collections.reverse(component);
+                components.add(component);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.launch;
+
+import java.util.*;
+import org.jitsi.impl.osgi.framework.*;
+import org.osgi.framework.*;
+
+/**
+ * The installed bundles of a framework, indexed by id and by location.
+ * Changes are made under the monitor of the table and publish an immutable
+ * snapshot, so that lookups and iteration never lock, and the bundles added
+ * together become visible together.
+ * <p>
+ * The id index is an open-addressing hash table with primitive {@code long}
+ * keys, sized to the installed bundles, so an id lookup costs O(1) without
+ * boxing. Iteration uses a separate array of the bundles in id order. A
+ * change copies the snapshot, which costs O(n) in the installed bundles.
+ */
+class BundleTable
+{
+    private volatile Snapshot snapshot = new Snapshot(new BundleImpl[0]);
+
+    /**
+     * Adds bundles to the table and publishes them at once.
+     *
+     * @param added the bundles to add, with ids not yet in the table.
+     */
+    synchronized void addAll(Collection<BundleImpl> added)
+    {
+        var current = snapshot.all;
+        var all = Arrays.copyOf(current, current.length + added.size());
+        int i = current.length;
+        var sorted = true;
+        for (BundleImpl bundle : added)
+        {
+            sorted &= i == 0 || all[i - 1].getBundleId() < bundle.getBundleId();
+            all[i++] = bundle;
+        }
+
+        if (!sorted)
+        {
+            // ids are reserved in order, but may be published out of order
+            Arrays.sort(all, Comparator.comparingLong(BundleImpl::getBundleId));
+        }
+        snapshot = new Snapshot(all);
+    }
+
+    /**
+     * Adds a bundle to the table.
+     *
+     * @param bundle the bundle to add.
+     */
+    void add(BundleImpl bundle)
+    {
+        addAll(Collections.singletonList(bundle));
+    }
+
+    /**
+     * Removes a bundle from the table.
+     *
+     * @param bundle the bundle to remove.
+     * @return {@code true} if the bundle was in the table.
+     */
+    synchronized boolean remove(BundleImpl bundle)
+    {
+        return removeAll(Collections.singletonList(bundle)) == 1;
+    }
+
+    /**
+     * Removes bundles from the table at once.
+     *
+     * @param removed the bundles to remove.
+     * @return the number of bundles that were in the table.
+     */
+    synchronized int removeAll(Collection<BundleImpl> removed)
+    {
+        var current = snapshot;
+        var all = new ArrayList<BundleImpl>(current.all.length);
+        for (BundleImpl b : current.all)
+        {
+            if (!removed.contains(b))
+            {
+                all.add(b);
+            }
+        }
+
+        int count = current.all.length - all.size();
+        if (count > 0)
+        {
+            snapshot = new Snapshot(all.toArray(new BundleImpl[0]));
+        }
+        return count;
+    }
+
+    /**
+     * Gets a bundle by its id.
+     *
+     * @param id the bundle id.
+     * @return the bundle, or {@code null} if no bundle has the id.
+     */
+    BundleImpl get(long id)
+    {
+        return snapshot.get(id);
+    }
+
+    /**
+     * Gets a bundle by its location.
+     *
+     * @param location the bundle location.
+     * @return the bundle, or {@code null} if no bundle has the location.
+     */
+    BundleImpl get(String location)
+    {
+        return snapshot.byLocation.get(location);
+    }
+
+    /**
+     * Gets the installed bundles in the order of their ids.
+     *
+     * @return an unmodifiable view of the current snapshot.
+     */
+    List<BundleImpl> list()
+    {
+        return Collections.unmodifiableList(Arrays.asList(snapshot.all));
+    }
+
+    /**
+     * Gets the installed bundles in the order of their ids.
+     *
+     * @return a copy of the array of the current snapshot.
+     */
+    Bundle[] toArray()
+    {
+        var all = snapshot.all;
+        return Arrays.copyOf(all, all.length, Bundle[].class);
+    }
+
+    private static class Snapshot
+    {
+        /**
+         * The key of an empty slot of {@link #ids}, bundle ids are never
+         * negative.
+         */
+        private static final long EMPTY = -1;
+
+        /**
+         * The ids of the bundles in {@link #bundles} at the same index, with
+         * linear probing. At most half of the slots are used.
+         */
+        private final long[] ids;
+
+        private final BundleImpl[] bundles;
+
+        private final Map<String, BundleImpl> byLocation;
+
+        /**
+         * The bundles in the order of their ids.
+         */
+        private final BundleImpl[] all;
+
+        private Snapshot(BundleImpl[] all)
+        {
+            int capacity = 2;
+            while (capacity < all.length * 2)
+            {
+                capacity <<= 1;
+            }
+
+            this.ids = new long[capacity];
+            Arrays.fill(ids, EMPTY);
+            this.bundles = new BundleImpl[capacity];
+            this.byLocation = new HashMap<>(all.length * 4 / 3 + 1);
+            this.all = all;
+            for (BundleImpl bundle : all)
+            {
+                int i = slot(bundle.getBundleId());
+                while (ids[i] != EMPTY)
+                {
+                    i = (i + 1) & (capacity - 1);
+                }
+
+                ids[i] = bundle.getBundleId();
+                bundles[i] = bundle;
+                byLocation.put(bundle.getLocation(), bundle);
+            }
+        }
+
+        private int slot(long id)
+        {
+            return Long.hashCode(id) & (ids.length - 1);
+        }
+
+        private BundleImpl get(long id)
+        {
+            for (int i = slot(id); ; i = (i + 1) & (ids.length - 1))
+            {
+                if (ids[i] == id)
+                {
+                    return bundles[i];
+                }
+                if (ids[i] == EMPTY)
+                {
+                    return null;
+                }
+            }
+        }
+    }
+}
@@ -17,11 +17,17 @@
  */
 package org.jitsi.impl.osgi.framework.launch;
 
+import java.io.*;
+import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.logging.*;
 import org.jitsi.impl.osgi.framework.*;
+import org.jitsi.impl.osgi.framework.profiling.*;
 import org.jitsi.impl.osgi.framework.startlevel.*;
+import org.jitsi.impl.osgi.framework.storage.*;
+import org.jitsi.osgi.framework.*;
 import org.osgi.framework.Filter;
 import org.osgi.framework.*;
 import org.osgi.framework.launch.*;
@@ -33,35 +39,217 @@ import org.osgi.framework.startlevel.*;
  */
 public class FrameworkImpl
     extends BundleImpl
-    implements Framework
+    implements Framework, BundleInstaller
 {
+    /**
+     * The configuration property specifying the number of threads used to
+     * start the bundles of a start level. A value of {@code 1} (the default)
+     * starts the bundles one after another on the start level thread, larger
+     * values start all bundles of a level concurrently and wait for all of
+     * them before moving on to the next level.
+     */
+    public static final String ACTIVATION_PARALLELISM
+        = "org.jitsi.osgi.framework.activation.parallelism";
+
+    /**
+     * The configuration property selecting how the bundles of a start level
+     * are stopped when the start level is lowered, either
+     * {@link #SHUTDOWN_MODE_SEQUENTIAL} (the default) or
+     * {@link #SHUTDOWN_MODE_PARALLEL}.
+     */
+    public static final String SHUTDOWN_MODE
+        = "org.jitsi.osgi.framework.shutdown.mode";
+
+    public static final String SHUTDOWN_MODE_SEQUENTIAL = "sequential";
+
+    public static final String SHUTDOWN_MODE_PARALLEL = "parallel";
+
+    /**
+     * The configuration property specifying the deadline in milliseconds for
+     * stopping a single bundle. A bundle exceeding it is reported in the
+     * {@link ShutdownReport} with a thread dump and the shutdown continues.
+     * The default of 0 waits indefinitely.
+     */
+    public static final String SHUTDOWN_TIMEOUT
+        = "org.jitsi.osgi.framework.shutdown.timeout";
+
+    /**
+     * The configuration property selecting how the classes of the bundles are
+     * defined, either {@link #CLASS_LOADER_MODE_BUNDLE} (the default), where
+     * every bundle has its own class loader over the whole class path and
+     * defines its own copy of every class it loads, or
+     * {@link #CLASS_LOADER_MODE_SHARED}, where all bundles delegate to a
+     * single class loader over the class path and every class is defined
+     * once. The shared class loader cannot tell which bundle defines a class,
+     * so it supports neither lazy activation nor {@link #PRELOAD_PARALLELISM}.
+     * It is closed when the framework stops, and the classes are defined
+     * again by a new one after a restart.
+     */
+    public static final String CLASS_LOADER_MODE
+        = "org.jitsi.osgi.framework.classloader.mode";
+
+    public static final String CLASS_LOADER_MODE_BUNDLE = "bundle";
+
+    public static final String CLASS_LOADER_MODE_SHARED = "shared";
+
+    /**
+     * The configuration property enabling the definition of classes directly
+     * from memory-mapped jars, {@code false} by default.
+     */
+    public static final String CLASS_LOADER_MMAP
+        = "org.jitsi.osgi.framework.classloader.mmap";
+
+    /**
+     * The configuration property specifying the number of background threads
+     * preloading the classes of the bundles of the next start level while
+     * the bundles of the current one are started. The classes are those the
+     * bundles defined during the previous startup, recorded in the
+     * {@link Constants#FRAMEWORK_STORAGE}. {@code 0} (the default) disables
+     * the recording and preloading.
+     */
+    public static final String PRELOAD_PARALLELISM
+        = "org.jitsi.osgi.framework.preload.parallelism";
+
+    /**
+     * The configuration property specifying how long in milliseconds a start
+     * or stop of a bundle waits for a transition of the same bundle running
+     * on another thread, before failing with
+     * {@link BundleException#STATECHANGE_ERROR}. The default is 30 seconds, 0
+     * waits indefinitely.
+     */
+    public static final String BUNDLE_TRANSITION_TIMEOUT
+        = "org.jitsi.osgi.framework.bundle.transition.timeout";
+
     /**
      * The logger
      */
     private final Logger logger
         = Logger.getLogger(FrameworkImpl.class.getName());
 
-    private final List<BundleImpl> bundles = new LinkedList<>();
+    /**
+     * The installed bundles, including the system bundle. Its monitor guards
+     * installation and uninstallation, lookups do not lock.
+     */
+    private final BundleTable bundles = new BundleTable();
+
+    /**
+     * The installed bundles by their assigned start level. Bundles without an
+     * assigned start level, which use the initial bundle start level, are
+     * kept at level 0. Guarded by {@link #bundles}.
+     */
+    private final NavigableMap<Integer, List<BundleImpl>> bundlesByStartLevel
+        = new TreeMap<>();
 
     private final Map<String, String> configuration;
 
+    /**
+     * The persistent storage area, {@code null} if
+     * {@link Constants#FRAMEWORK_STORAGE} is not configured.
+     */
+    private final FrameworkStorage storage;
+
     private EventDispatcher eventDispatcher;
 
     private final FrameworkStartLevelImpl frameworkStartLevel
         = new FrameworkStartLevelImpl(this);
 
+    /**
+     * The id of the next installed bundle. Guarded by {@link #bundles}.
+     */
     private long nextBundleId = 1;
 
+    /**
+     * The installations in progress by location, so that concurrent
+     * installations of a location prepare a single bundle. Guarded by
+     * {@link #bundles}.
+     */
+    private final Map<String, CompletableFuture<BundleImpl>> pendingInstalls
+        = new HashMap<>();
+
     private long nextServiceId = 1;
 
     private final List<ServiceRegistrationImpl<?>> serviceRegistrations
         = new LinkedList<>();
 
-    private final Object stopEvent = new Object();
+    /**
+     * Completes when the framework has been started, {@code null} while the
+     * framework is not starting or active. Guarded by {@code this}.
+     */
+    private CompletableFuture<Void> startFuture;
+
+    /**
+     * Completes with the {@link FrameworkEvent#STOPPED} event when the
+     * framework has been stopped, replaced whenever the framework is
+     * initialized.
+     */
+    private volatile CompletableFuture<FrameworkEvent> stopFuture;
 
     private final List<FrameworkListener> frameworkListeners =
         Collections.synchronizedList(new ArrayList<>());
 
+    /**
+     * The bundles that added a framework listener through their context, so
+     * that the listeners can be removed when the bundle is uninstalled.
+     */
+    private final Map<FrameworkListener, Bundle> frameworkListenerOwners =
+        Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * The executor of the asynchronous work of the framework, e.g. start
+     * level changes and asynchronous bundle transitions, which may run
+     * activators and must not occupy the common pool of the JVM. Its threads
+     * end after a minute without work, so it is never shut down.
+     */
+    private final ExecutorService executor = createExecutor();
+
+    /**
+     * The executor starting the bundles of a start level concurrently, created
+     * on demand when {@link #ACTIVATION_PARALLELISM} is larger than one.
+     */
+    private ExecutorService activationExecutor;
+
+    /**
+     * The scheduler of the start level currently being entered, notified of
+     * service registrations so that waiting bundles can be started.
+     */
+    private volatile ActivationScheduler activationScheduler;
+
+    /**
+     * The executor stopping bundles when a shutdown deadline or the parallel
+     * shutdown mode is configured.
+     */
+    private ExecutorService stopExecutor;
+
+    /**
+     * The executor preloading the classes of the next start level, created on
+     * demand when {@link #PRELOAD_PARALLELISM} is positive.
+     */
+    private ExecutorService preloadExecutor;
+
+    private volatile ShutdownReport shutdownReport = new ShutdownReport();
+
+    /**
+     * The profiler of the current startup, replaced on every
+     * {@link #init()}.
+     */
+    private volatile StartupProfiler startupProfiler;
+
+    /**
+     * The class loader defining the classes of all bundles in
+     * {@link #CLASS_LOADER_MODE_SHARED}, {@code null} otherwise. Closed and
+     * replaced when the framework stops.
+     */
+    private volatile BundleClassLoader sharedClassLoader;
+
+    /**
+     * The index of the class path, built once for the class loaders of all
+     * bundles. Closed when the last of them is closed and when the framework
+     * stops, and built again by the next lookup.
+     */
+    private final ClassPathIndex classPath;
+
+    private volatile StartupReport startupReport;
+
     public FrameworkImpl(Map<String, String> configuration, ClassLoader classLoader)
     {
         super(null,
@@ -70,6 +258,29 @@ public class FrameworkImpl
             classLoader);
 
         this.configuration = configuration;
+        var storageDir = getConfiguration(Constants.FRAMEWORK_STORAGE, null);
+        this.storage = storageDir == null
+            ? null
+            : new FrameworkStorage(new File(storageDir),
+                Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT.equals(
+                    getConfiguration(Constants.FRAMEWORK_STORAGE_CLEAN,
+                        null)));
+        this.classPath = new ClassPathIndex(
+            BundleClassLoader.getClassPathUrls(),
+            Boolean.parseBoolean(getConfiguration(CLASS_LOADER_MMAP, null)));
+        var shared = CLASS_LOADER_MODE_SHARED.equalsIgnoreCase(
+            getConfiguration(CLASS_LOADER_MODE, CLASS_LOADER_MODE_BUNDLE));
+        if (shared && getConfigurationInt(PRELOAD_PARALLELISM, 0) > 0)
+        {
+            throw new IllegalArgumentException(PRELOAD_PARALLELISM
+                + " requires " + CLASS_LOADER_MODE + "="
+                + CLASS_LOADER_MODE_BUNDLE + ", the shared class loader does"
+                + " not record the classes of a bundle");
+        }
+        this.sharedClassLoader = shared
+            ? new BundleClassLoader(classPath, classLoader, storage,
+                executor)
+            : null;
 
         bundles.add(this);
     }
@@ -78,11 +289,17 @@ public class FrameworkImpl
     @SuppressWarnings("unchecked")
     public <A> A adapt(Class<A> type)
     {
-        if (FrameworkStartLevel.class.equals(type))
+        if (FrameworkStartLevel.class.equals(type)
+            || AsyncFrameworkStartLevel.class.equals(type))
         {
             return (A) frameworkStartLevel;
         }
 
+        if (BundleInstaller.class.equals(type))
+        {
+            return (A) this;
+        }
+
         return super.adapt(type);
     }
 
@@ -112,6 +329,14 @@ public class FrameworkImpl
         frameworkListeners.add(listener);
     }
 
+    public void addFrameworkListener(
+        BundleImpl origin,
+        FrameworkListener listener)
+    {
+        frameworkListenerOwners.put(listener, origin);
+        addFrameworkListener(listener);
+    }
+
     public void fireBundleEvent(int type, Bundle bundle)
     {
         fireBundleEvent(type, bundle, bundle);
@@ -128,7 +353,47 @@ public class FrameworkImpl
 
     private void fireFrameworkEvent(int type, FrameworkListener... listeners)
     {
-        FrameworkEvent event = new FrameworkEvent(type, this, null);
+        fireFrameworkEvent(type, null, listeners);
+    }
+
+    private void fireFrameworkEvent(
+        int type,
+        Throwable throwable,
+        FrameworkListener... listeners)
+    {
+        fireFrameworkEvent(type, this, throwable, listeners);
+    }
+
+    /**
+     * Notifies the framework listeners of an event.
+     *
+     * @param type the {@link FrameworkEvent} type.
+     * @param bundle the bundle the event is about.
+     * @param throwable the error related to the event, or {@code null}.
+     * @param listeners additional listeners to notify after the registered
+     * framework listeners.
+     */
+    public void fireFrameworkEvent(
+        int type,
+        Bundle bundle,
+        Throwable throwable,
+        FrameworkListener... listeners)
+    {
+        FrameworkEvent event = new FrameworkEvent(type, bundle, throwable);
+        for (FrameworkListener listener : frameworkListeners)
+        {
+            try
+            {
+                listener.frameworkEvent(event);
+            }
+            catch (Exception t)
+            {
+                logger.log(Level.SEVERE, "Error firing framework event", t);
+            }
+        }
+
+        // The listeners of a specific operation are notified last, they
+        // usually signal its completion to a waiting thread.
         if (listeners != null && listeners.length != 0)
         {
             for (FrameworkListener listener : listeners)
@@ -143,18 +408,6 @@ public class FrameworkImpl
                 }
             }
         }
-
-        for (FrameworkListener listener : frameworkListeners)
-        {
-            try
-            {
-                listener.frameworkEvent(event);
-            }
-            catch (Exception t)
-            {
-                logger.log(Level.SEVERE, "Error firing framework event", t);
-            }
-        }
     }
 
     private void fireServiceEvent(int type, ServiceReference<?> reference)
@@ -167,53 +420,97 @@ public class FrameworkImpl
 
     public BundleImpl getBundle(long id)
     {
-        if (id == 0)
+        return id == 0 ? this : bundles.get(id);
+    }
+
+    /**
+     * Gets an installed bundle by its location.
+     *
+     * @param location the location the bundle was installed from.
+     * @return the bundle, or {@code null} if no bundle has the location.
+     */
+    public BundleImpl getBundle(String location)
+    {
+        return bundles.get(location);
+    }
+
+    private List<BundleImpl> getBundlesByStartLevel(int startLevel)
+    {
+        List<BundleImpl> bundles = new ArrayList<>();
+
+        synchronized (this.bundles)
         {
-            return this;
+            bundles.addAll(bundlesByStartLevel.getOrDefault(startLevel,
+                Collections.emptyList()));
+            if (startLevel == frameworkStartLevel.getInitialBundleStartLevel())
+            {
+                bundles.addAll(bundlesByStartLevel.getOrDefault(0,
+                    Collections.emptyList()));
+                Collections.sort(bundles);
+            }
         }
-        else
+        return bundles;
+    }
+
+    /**
+     * Gets the start levels at which at least one bundle is installed.
+     *
+     * @return the populated start levels in ascending order.
+     */
+    public NavigableSet<Integer> getPopulatedStartLevels()
+    {
+        var startLevels = new TreeSet<Integer>();
+        synchronized (bundles)
         {
-            synchronized (this.bundles)
+            for (var e : bundlesByStartLevel.entrySet())
             {
-                for (BundleImpl bundle : this.bundles)
+                if (!e.getValue().isEmpty())
                 {
-                    if (bundle.getBundleId() == id)
-                    {
-                        return bundle;
-                    }
+                    startLevels.add(e.getKey() == 0
+                        ? frameworkStartLevel.getInitialBundleStartLevel()
+                        : e.getKey());
                 }
             }
-            return null;
         }
+        return startLevels;
     }
 
-    private List<BundleImpl> getBundlesByStartLevel(int startLevel)
+    /**
+     * Moves a bundle in the start level index after its start level has been
+     * changed.
+     *
+     * @param bundle the bundle whose start level changed.
+     * @param oldStartLevel the previously assigned start level, 0 if none.
+     * @param newStartLevel the newly assigned start level.
+     */
+    public void bundleStartLevelChanged(
+        BundleImpl bundle,
+        int oldStartLevel,
+        int newStartLevel)
     {
-        List<BundleImpl> bundles = new LinkedList<>();
-
-        synchronized (this.bundles)
+        synchronized (bundles)
         {
-            for (BundleImpl bundle : this.bundles)
+            var oldBucket = bundlesByStartLevel.get(oldStartLevel);
+            if (oldBucket == null || !oldBucket.remove(bundle))
             {
-                BundleStartLevel bundleStartLevel
-                    = bundle.adapt(BundleStartLevel.class);
+                // not (or no longer) installed
+                return;
+            }
 
-                if (bundleStartLevel != null
-                    && bundleStartLevel.getStartLevel() == startLevel)
-                {
-                    bundles.add(bundle);
-                }
+            if (oldBucket.isEmpty())
+            {
+                bundlesByStartLevel.remove(oldStartLevel);
             }
+
+            bundlesByStartLevel
+                .computeIfAbsent(newStartLevel, k -> new ArrayList<>())
+                .add(bundle);
         }
-        return bundles;
     }
 
     public Bundle[] getBundles()
     {
-        synchronized(this.bundles)
-        {
-            return this.bundles.toArray(new Bundle[0]);
-        }
+        return bundles.toArray();
     }
 
     @SuppressWarnings("unchecked")
@@ -224,6 +521,11 @@ public class FrameworkImpl
         boolean checkAssignable)
         throws InvalidSyntaxException
     {
+        if (className != null)
+        {
+            activateLazyBundles(className);
+        }
+
         Filter classNameFilter
             = FrameworkUtil.createFilter(
             '('
@@ -252,6 +554,110 @@ public class FrameworkImpl
         return serviceReferences;
     }
 
+    /**
+     * Runs the activators of the lazily activated bundles that declare to
+     * provide the specified service and are waiting for their trigger.
+     *
+     * @param className the name of the service that is looked up.
+     */
+    private void activateLazyBundles(String className)
+    {
+        List<BundleImpl> lazyBundles = null;
+        for (BundleImpl bundle : bundles.list())
+        {
+            if (bundle.isLazyActivationPending()
+                && bundle.getProvidedServices().contains(className))
+            {
+                if (lazyBundles == null)
+                {
+                    lazyBundles = new ArrayList<>(1);
+                }
+
+                lazyBundles.add(bundle);
+            }
+        }
+
+        if (lazyBundles != null)
+        {
+            for (BundleImpl bundle : lazyBundles)
+            {
+                bundle.activateLazily();
+            }
+        }
+    }
+
+    /**
+     * Gets the value of a configuration property.
+     *
+     * @param key the name of the configuration property.
+     * @param defaultValue the value to return if the property is not set.
+     * @return the configured value or {@code defaultValue}.
+     */
+    public String getConfiguration(String key, String defaultValue)
+    {
+        if (configuration != null)
+        {
+            var s = configuration.get(key);
+            if (s != null)
+            {
+                return s.trim();
+            }
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Gets the integer value of a configuration property.
+     *
+     * @param key the name of the configuration property.
+     * @param defaultValue the value to return if the property is not set or
+     * not a valid integer.
+     * @return the configured value or {@code defaultValue}.
+     */
+    public int getConfigurationInt(String key, int defaultValue)
+    {
+        var s = getConfiguration(key, null);
+        if (s != null)
+        {
+            try
+            {
+                return Integer.parseInt(s);
+            }
+            catch (NumberFormatException nfe)
+            {
+                logger.warning("Ignoring invalid value for " + key + ": " + s);
+            }
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Checks whether a service is registered under the specified name.
+     *
+     * @param className the name of the service interface.
+     * @return {@code true} if at least one service is registered under
+     * {@code className}.
+     */
+    public boolean isServiceRegistered(String className)
+    {
+        synchronized (serviceRegistrations)
+        {
+            for (var serviceRegistration : serviceRegistrations)
+            {
+                var classNames = (String[]) serviceRegistration.getReference()
+                    .getProperty(Constants.OBJECTCLASS);
+                if (Arrays.asList(classNames).contains(className))
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
     @Override
     public FrameworkImpl getFramework()
     {
@@ -279,65 +685,416 @@ public class FrameworkImpl
             frameworkListeners.addAll(Arrays.asList(listeners));
         }
 
+        if (getState() != STARTING && getState() != ACTIVE)
+        {
+            // a new startup, also after the framework was stopped
+            startupProfiler = new StartupProfiler(getBundles());
+        }
         setState(STARTING);
     }
 
     public Bundle installBundle(BundleImpl origin, String location)
         throws BundleException
     {
-        if (location == null)
+        return installBundles(origin, Collections.singletonList(location),
+            executor).get(0);
+    }
+
+    @Override
+    public List<Bundle> installBundles(Collection<String> locations)
+        throws BundleException
+    {
+        return installBundles(this, locations, executor);
+    }
+
+    @Override
+    public List<Bundle> installBundles(
+        Collection<String> locations,
+        Executor executor)
+        throws BundleException
+    {
+        return installBundles(this, locations, executor);
+    }
+
+    /**
+     * Installs bundles. The locations are reserved and the bundle ids
+     * assigned under the monitor of {@link #bundles}, the bundles are then
+     * constructed outside of it, which indexes their entries and builds their
+     * class loaders, in parallel if there is more than one. Finally, the
+     * bundles are published at once, or none of them if one of them failed.
+     * Locations that another thread is installing are waited for.
+     *
+     * @param origin the bundle performing the installation.
+     * @param locations the locations of the bundles.
+     * @param executor the executor to construct the bundles on, together
+     * with the calling thread.
+     * @return the bundles in the order of the locations.
+     * @throws BundleException if a location is {@code null} or a bundle could
+     * not be constructed.
+     */
+    public List<Bundle> installBundles(
+        BundleImpl origin,
+        Collection<String> locations,
+        Executor executor)
+        throws BundleException
+    {
+        // contains(null) throws for collections that reject null elements
+        for (String location : locations)
         {
-            throw new BundleException("location");
+            if (location == null)
+            {
+                throw new BundleException("location");
+            }
         }
 
-        BundleImpl bundle = null;
-        boolean fireBundleEvent = false;
-
+        var results = new ArrayList<CompletableFuture<BundleImpl>>(
+            locations.size());
+        var reserved = new LinkedHashMap<String, Long>();
         synchronized (bundles)
         {
-            for (BundleImpl existing : bundles)
+            for (String location : locations)
             {
-                if (existing.getLocation().equals(location))
+                var installed = bundles.get(location);
+                if (installed != null)
                 {
-                    bundle = existing;
-                    break;
+                    results.add(CompletableFuture.completedFuture(installed));
+                    continue;
                 }
-            }
-            if (bundle == null)
-            {
-                bundle
-                    = new BundleImpl(
-                    getFramework(),
-                    getNextBundleId(),
-                    location,
-                    new BundleClassLoader(classLoader));
-                bundles.add(bundle);
-                fireBundleEvent = true;
+
+                var pending = pendingInstalls.get(location);
+                if (pending == null)
+                {
+                    pending = new CompletableFuture<>();
+                    pendingInstalls.put(location, pending);
+                    reserved.put(location, getNextBundleId());
+                }
+                results.add(pending);
             }
         }
 
-        if (fireBundleEvent)
+        if (!reserved.isEmpty())
         {
-            fireBundleEvent(BundleEvent.INSTALLED, bundle, origin);
+            installReserved(origin, reserved, executor);
         }
 
-        return bundle;
+        var installed = new ArrayList<Bundle>(results.size());
+        for (var result : results)
+        {
+            try
+            {
+                installed.add(result.join());
+            }
+            catch (CompletionException e)
+            {
+                throw new BundleException("Could not install bundle",
+                    BundleException.READ_ERROR, e.getCause());
+            }
+        }
+        return installed;
     }
 
-    public <T> ServiceRegistration<T> registerService(
+    /**
+     * Constructs the bundles of reserved locations, with at most one task per
+     * processor on the executor and in the calling thread, publishes them and
+     * completes the pending installations of their locations.
+     *
+     * @param origin the bundle performing the installation.
+     * @param reserved the assigned bundle ids by location.
+     * @param executor the executor to construct the bundles on.
+     */
+    private void installReserved(
         BundleImpl origin,
-        String[] classNames,
-        T service,
-        Dictionary<String, ?> properties)
+        Map<String, Long> reserved,
+        Executor executor)
     {
-        if (classNames == null || classNames.length == 0)
+        var entries = new ArrayList<>(reserved.entrySet());
+        var futures = new ArrayList<CompletableFuture<BundleImpl>>(
+            entries.size());
+        for (int i = 0; i < entries.size(); i++)
         {
-            throw new IllegalArgumentException("classNames");
+            futures.add(new CompletableFuture<>());
         }
-        else if (service == null)
+
+        var next = new AtomicInteger();
+        Runnable worker = () ->
         {
-            throw new IllegalArgumentException("service is null for " + Arrays.toString(classNames));
-        }
+            for (int i; (i = next.getAndIncrement()) < entries.size();)
+            {
+                var e = entries.get(i);
+                try
+                {
+                    futures.get(i).complete(
+                        prepareBundle(e.getValue(), e.getKey()));
+                }
+                catch (Throwable ex)
+                {
+                    // also an Error, the pending installation must be
+                    // completed
+                    futures.get(i).completeExceptionally(ex);
+                }
+            }
+        };
+
+        int helpers = Math.min(entries.size(),
+            Runtime.getRuntime().availableProcessors()) - 1;
+        for (int i = 0; i < helpers; i++)
+        {
+            try
+            {
+                executor.execute(worker);
+            }
+            catch (RejectedExecutionException ree)
+            {
+                // the calling thread constructs the remaining bundles
+                break;
+            }
+        }
+        worker.run();
+
+        var prepared = new ArrayList<BundleImpl>(futures.size());
+        Throwable failure = null;
+        for (var future : futures)
+        {
+            try
+            {
+                prepared.add(future.join());
+            }
+            catch (CompletionException e)
+            {
+                if (failure == null)
+                {
+                    failure = e.getCause();
+                }
+            }
+        }
+
+        if (failure != null)
+        {
+            prepared.forEach(BundleImpl::releaseClassLoader);
+            prepared.clear();
+        }
+
+        var pending = new ArrayList<CompletableFuture<BundleImpl>>(
+            reserved.size());
+        try
+        {
+            synchronized (bundles)
+            {
+                try
+                {
+                    if (!prepared.isEmpty())
+                    {
+                        publish(prepared);
+                    }
+                }
+                finally
+                {
+                    for (String location : reserved.keySet())
+                    {
+                        pending.add(pendingInstalls.remove(location));
+                    }
+                }
+            }
+        }
+        catch (Throwable e)
+        {
+            failure = e;
+            prepared.forEach(BundleImpl::releaseClassLoader);
+            prepared.clear();
+            throw e;
+        }
+        finally
+        {
+            // waiters must never block forever on a location
+            for (int i = 0; i < pending.size(); i++)
+            {
+                if (failure == null)
+                {
+                    pending.get(i).complete(prepared.get(i));
+                }
+                else
+                {
+                    pending.get(i).completeExceptionally(failure);
+                }
+            }
+        }
+
+        for (BundleImpl bundle : prepared)
+        {
+            fireBundleEvent(BundleEvent.INSTALLED, bundle, origin);
+        }
+    }
+
+    /**
+     * Makes prepared bundles visible to the framework, the bundle table last
+     * with a single snapshot, so that lookups see either all of them or none.
+     * Must be called under the monitor of {@link #bundles}.
+     *
+     * @param prepared the bundles to publish.
+     */
+    private void publish(List<BundleImpl> prepared)
+    {
+        var bucket = bundlesByStartLevel
+            .computeIfAbsent(0, k -> new ArrayList<>());
+        bucket.addAll(prepared);
+        try
+        {
+            bundles.addAll(prepared);
+        }
+        catch (Throwable e)
+        {
+            bucket.removeAll(prepared);
+            throw e;
+        }
+    }
+
+    /**
+     * Constructs a bundle that is not yet visible to the framework, and
+     * builds its entry index.
+     *
+     * @param id the assigned bundle id.
+     * @param location the location of the bundle.
+     * @return the bundle.
+     */
+    private BundleImpl prepareBundle(long id, String location)
+    {
+        var loader = createClassLoader();
+        try
+        {
+            var bundle = new BundleImpl(this, id, location, loader);
+            bundle.prepare();
+            if (isPreloading())
+            {
+                bundle.startClassRecording();
+            }
+            return bundle;
+        }
+        catch (Throwable e)
+        {
+            try
+            {
+                loader.close();
+            }
+            catch (IOException ex)
+            {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the class loader of a bundle that is installed or updated. In
+     * {@link #CLASS_LOADER_MODE_SHARED}, this is a class loader that only
+     * delegates to the shared class loader.
+     *
+     * @return the new class loader.
+     */
+    public BundleClassLoader createClassLoader()
+    {
+        return sharedClassLoader == null
+            ? new BundleClassLoader(classPath, classLoader, storage,
+                executor)
+            : new BundleClassLoader(sharedClassLoader);
+    }
+
+    /**
+     * Removes a bundle that has been uninstalled from the framework, together
+     * with the services it registered, the listeners it added and its data
+     * area, and notifies the bundle listeners.
+     *
+     * @param bundle the uninstalled bundle.
+     */
+    public void bundleUninstalled(BundleImpl bundle)
+    {
+        synchronized (bundles)
+        {
+            bundles.remove(bundle);
+            var it = bundlesByStartLevel.values().iterator();
+            while (it.hasNext())
+            {
+                var bucket = it.next();
+                if (bucket.remove(bundle) && bucket.isEmpty())
+                {
+                    it.remove();
+                }
+            }
+        }
+
+        unregisterServices(bundle);
+        if (eventDispatcher != null)
+        {
+            eventDispatcher.removeListeners(bundle);
+        }
+        synchronized (frameworkListenerOwners)
+        {
+            var it = frameworkListenerOwners.entrySet().iterator();
+            while (it.hasNext())
+            {
+                var e = it.next();
+                if (e.getValue() == bundle)
+                {
+                    frameworkListeners.remove(e.getKey());
+                    it.remove();
+                }
+            }
+        }
+
+        if (storage != null)
+        {
+            storage.remove(bundle.getLocation());
+        }
+
+        fireBundleEvent(BundleEvent.UNINSTALLED, bundle);
+    }
+
+    /**
+     * Unregisters all services that a bundle registered and did not
+     * unregister itself.
+     *
+     * @param bundle the bundle whose services to unregister.
+     */
+    public void unregisterServices(BundleImpl bundle)
+    {
+        List<ServiceRegistration<?>> registrations = new ArrayList<>();
+        synchronized (serviceRegistrations)
+        {
+            for (var serviceRegistration : serviceRegistrations)
+            {
+                if (serviceRegistration.getReference().getBundle() == bundle)
+                {
+                    registrations.add(serviceRegistration);
+                }
+            }
+        }
+
+        for (var serviceRegistration : registrations)
+        {
+            try
+            {
+                unregisterService(bundle, serviceRegistration);
+            }
+            catch (IllegalStateException ise)
+            {
+                // unregistered concurrently
+            }
+        }
+    }
+
+    public <T> ServiceRegistration<T> registerService(
+        BundleImpl origin,
+        String[] classNames,
+        T service,
+        Dictionary<String, ?> properties)
+    {
+        if (classNames == null || classNames.length == 0)
+        {
+            throw new IllegalArgumentException("classNames");
+        }
+        else if (service == null)
+        {
+            throw new IllegalArgumentException("service is null for " + Arrays.toString(classNames));
+        }
         else
         {
             Class<?> serviceClass = service.getClass();
@@ -391,6 +1148,13 @@ public class FrameworkImpl
         fireServiceEvent(
             ServiceEvent.REGISTERED,
             serviceRegistration.getReference());
+
+        var scheduler = activationScheduler;
+        if (scheduler != null)
+        {
+            scheduler.serviceRegistered(classNames);
+        }
+
         return serviceRegistration;
     }
 
@@ -421,92 +1185,470 @@ public class FrameworkImpl
     public void removeFrameworkListener(FrameworkListener listener)
     {
         frameworkListeners.remove(listener);
+        frameworkListenerOwners.remove(listener);
     }
 
     @Override
     public void start(int options)
         throws BundleException
     {
-        int state = getState();
+        try
+        {
+            startAsync(options).get();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof BundleException)
+            {
+                throw (BundleException) e.getCause();
+            }
 
+            throw new BundleException("Framework start failed",
+                BundleException.UNSPECIFIED, e.getCause());
+        }
+    }
+
+    /**
+     * Starts the framework without blocking the caller. The framework is
+     * initialized if necessary and moved to the beginning start level.
+     *
+     * @param options ignored.
+     * @return a future that completes after {@link FrameworkEvent#STARTED}
+     * has been fired.
+     */
+    @Override
+    public synchronized CompletableFuture<Void> startAsync(int options)
+    {
+        if (startFuture != null)
+        {
+            return startFuture;
+        }
+
+        int state = getState();
         if (state == INSTALLED || state == RESOLVED)
         {
-            init();
+            try
+            {
+                init();
+            }
+            catch (BundleException e)
+            {
+                return CompletableFuture.failedFuture(e);
+            }
             state = getState();
         }
 
-        if (state == STARTING)
+        if (state != STARTING)
         {
-            int startLevel = 1;
-            if (configuration != null)
+            return CompletableFuture.completedFuture(null);
+        }
+
+        int startLevel = getConfigurationInt(
+            Constants.FRAMEWORK_BEGINNING_STARTLEVEL, 1);
+        startFuture = frameworkStartLevel.internalSetStartLevel(startLevel)
+            .thenAccept(reached ->
             {
-                var s =
-                    configuration.get(Constants.FRAMEWORK_BEGINNING_STARTLEVEL);
-                if (s != null)
+                synchronized (this)
+                {
+                    if (getState() != STARTING)
+                    {
+                        // stopped while starting
+                        return;
+                    }
+
+                    setState(ACTIVE);
+                }
+
+                startupReport = getStartupProfiler().createReport(getBundles());
+                if (logger.isLoggable(Level.FINE))
+                {
+                    logger.fine(startupReport.toString());
+                }
+                if (isPreloading())
+                {
+                    bundles.list().forEach(BundleImpl::saveClassList);
+                }
+                if (storage != null)
+                {
+                    storage.save();
+                }
+                fireFrameworkEvent(FrameworkEvent.STARTED);
+            });
+        return startFuture;
+    }
+
+    /**
+     * Starts the bundles of a start level that has been entered.
+     *
+     * @param oldStartLevel the previous start level of the framework.
+     * @param newStartLevel the start level that has been entered.
+     * @return the number of bundles that were started.
+     */
+    public int startLevelChanged(int oldStartLevel, int newStartLevel)
+    {
+        var bundles = Collections.<BundleImpl>emptyList();
+        if (oldStartLevel < newStartLevel)
+        {
+            bundles = getBundlesByStartLevel(newStartLevel);
+            int parallelism = getConfigurationInt(ACTIVATION_PARALLELISM, 1);
+            if ((parallelism > 1 && bundles.size() > 1)
+                || bundles.stream()
+                    .anyMatch(b -> !b.getRequiredServices().isEmpty()))
+            {
+                startBundlesScheduled(newStartLevel, bundles, parallelism);
+            }
+            else
+            {
+                for (BundleImpl bundle : bundles)
                 {
                     try
                     {
-                        startLevel = Integer.parseInt(s);
+                        bundle.start(
+                            START_TRANSIENT | START_ACTIVATION_POLICY);
                     }
-                    catch (NumberFormatException nfe)
+                    catch (Exception t)
                     {
-                        // ignore, keep default start level
+                        logger.log(Level.SEVERE, "Error changing start level",
+                            t);
                     }
                 }
             }
+        }
+        return bundles.size();
+    }
 
-            var startLevelAwaiter = new Semaphore(0);
-            frameworkStartLevel.setStartLevel(startLevel,
-                event -> startLevelAwaiter.release());
-            while (frameworkStartLevel.getStartLevel() < startLevel)
+    /**
+     * Notifies the framework that a start level change requested through
+     * {@link FrameworkStartLevelImpl} has completed.
+     *
+     * @param listeners the listeners passed to the start level change, which
+     * are notified in addition to the registered framework listeners.
+     */
+    public void startLevelReached(FrameworkListener... listeners)
+    {
+        fireFrameworkEvent(FrameworkEvent.STARTLEVEL_CHANGED, listeners);
+    }
+
+    /**
+     * Starts the specified bundles in the order implied by their declared
+     * service dependencies and waits until all of them have either started or
+     * failed. Failures are reported as a single {@link FrameworkEvent#ERROR},
+     * dependency problems as {@link FrameworkEvent#WARNING}.
+     *
+     * @param startLevel the start level the bundles belong to.
+     * @param bundles the bundles to start.
+     * @param parallelism the maximum number of bundles to start at once.
+     */
+    private void startBundlesScheduled(
+        int startLevel,
+        List<BundleImpl> bundles,
+        int parallelism)
+    {
+        var scheduler = new ActivationScheduler(this, startLevel, bundles);
+        for (String diagnostic : scheduler.getDiagnostics())
+        {
+            logger.warning(diagnostic);
+            fireFrameworkEvent(FrameworkEvent.WARNING,
+                new BundleException(diagnostic, BundleException.RESOLVE_ERROR));
+        }
+
+        activationScheduler = scheduler;
+        try
+        {
+            scheduler.run(parallelism > 1
+                ? getActivationExecutor(parallelism)
+                : Runnable::run);
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        finally
+        {
+            activationScheduler = null;
+        }
+
+        BundleException failure = null;
+        for (var e : scheduler.getFailures().entrySet())
+        {
+            logger.log(Level.SEVERE, "Error starting bundle "
+                + e.getKey().getLocation(), e.getValue());
+            if (failure == null)
             {
-                try
-                {
-                    startLevelAwaiter.acquire();
-                }
-                catch (InterruptedException ie)
-                {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
+                failure = new BundleException(
+                    "Failed to start bundles at start level " + startLevel,
+                    BundleException.ACTIVATOR_ERROR);
             }
+            failure.addSuppressed(e.getValue());
+        }
 
-            setState(ACTIVE);
-            fireFrameworkEvent(FrameworkEvent.STARTED);
+        if (failure != null)
+        {
+            fireFrameworkEvent(FrameworkEvent.ERROR, failure);
         }
     }
 
-    public void startLevelChanged(
-        int oldStartLevel, int newStartLevel,
-        FrameworkListener... listeners)
+    private static ExecutorService createExecutor()
     {
-        if (oldStartLevel < newStartLevel)
+        var threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(r ->
         {
-            for (BundleImpl bundle : getBundlesByStartLevel(newStartLevel))
-            {
-                try
+            var t = new Thread(r, "osgi-worker-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Gets the executor of the asynchronous work of this framework.
+     *
+     * @return the executor, which accepts blocking tasks.
+     */
+    public Executor getExecutor()
+    {
+        return executor;
+    }
+
+    private synchronized ExecutorService getActivationExecutor(int parallelism)
+    {
+        if (activationExecutor == null)
+        {
+            var threadCount = new AtomicInteger();
+            activationExecutor = Executors.newFixedThreadPool(parallelism,
+                r ->
                 {
-                    BundleStartLevel bundleStartLevel
-                        = bundle.adapt(BundleStartLevel.class);
-                    int options = START_TRANSIENT;
+                    var t = new Thread(r,
+                        "osgi-activator-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        }
 
-                    bundle.start(options);
-                }
-                catch (Exception t)
+        return activationExecutor;
+    }
+
+    /**
+     * Checks whether the bundles delegate to a single shared class loader.
+     *
+     * @return {@code true} in {@link #CLASS_LOADER_MODE_SHARED}.
+     */
+    public boolean isSharedClassLoaderMode()
+    {
+        return sharedClassLoader != null;
+    }
+
+    private boolean isPreloading()
+    {
+        return storage != null
+            && getConfigurationInt(PRELOAD_PARALLELISM, 0) > 0;
+    }
+
+    /**
+     * Starts preloading the recorded classes of the bundles of a start level
+     * on the preload executor, without waiting for them.
+     *
+     * @param startLevel the start level that will be entered next.
+     */
+    public void preloadStartLevel(int startLevel)
+    {
+        if (!isPreloading())
+        {
+            return;
+        }
+
+        var executor = getPreloadExecutor(
+            getConfigurationInt(PRELOAD_PARALLELISM, 0));
+        for (BundleImpl bundle : getBundlesByStartLevel(startLevel))
+        {
+            executor.execute(() ->
+            {
+                long start = System.nanoTime();
+                int count = bundle.preloadClasses();
+                if (count > 0 && logger.isLoggable(Level.FINE))
                 {
-                    logger.log(Level.SEVERE, "Error changing start level", t);
+                    logger.fine("Preloaded " + count + " classes of "
+                        + bundle.getLocation() + " in "
+                        + Duration.ofNanos(System.nanoTime() - start)
+                            .toMillis() + "ms");
                 }
+            });
+        }
+    }
+
+    private synchronized ExecutorService getPreloadExecutor(int parallelism)
+    {
+        if (preloadExecutor == null)
+        {
+            var threadCount = new AtomicInteger();
+            preloadExecutor = Executors.newFixedThreadPool(parallelism,
+                r ->
+                {
+                    var t = new Thread(r,
+                        "osgi-preload-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    // only uses the time the activators leave idle
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        }
+
+        return preloadExecutor;
+    }
+
+    private synchronized void shutdownExecutors()
+    {
+        if (preloadExecutor != null)
+        {
+            preloadExecutor.shutdownNow();
+            preloadExecutor = null;
+        }
+
+        if (activationExecutor != null)
+        {
+            activationExecutor.shutdown();
+            activationExecutor = null;
+        }
+
+        if (stopExecutor != null)
+        {
+            stopExecutor.shutdown();
+            stopExecutor = null;
+        }
+    }
+
+    /**
+     * Closes the shared class loader when the framework has stopped, and
+     * gives the bundles that remain installed class loaders delegating to a
+     * new one, which defines their classes again if the framework is
+     * restarted.
+     */
+    private void renewSharedClassLoader()
+    {
+        var closed = sharedClassLoader;
+        if (closed == null)
+        {
+            return;
+        }
+
+        sharedClassLoader = new BundleClassLoader(classPath, classLoader,
+            storage, executor);
+        for (BundleImpl bundle : bundles.list())
+        {
+            if (bundle == this)
+            {
+                continue;
+            }
+
+            try
+            {
+                bundle.renewClassLoader();
+            }
+            catch (BundleException e)
+            {
+                logger.log(Level.WARNING, "Could not replace the class loader"
+                    + " of " + bundle.getLocation(), e);
             }
         }
 
-        fireFrameworkEvent(FrameworkEvent.STARTLEVEL_CHANGED, listeners);
+        try
+        {
+            closed.close();
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not close the shared class loader",
+                e);
+        }
+    }
+
+    /**
+     * Closes the jars of the class path when the framework has stopped. The
+     * class loaders of the bundles that remain installed open them again on
+     * their next lookup.
+     */
+    private void closeClassPath()
+    {
+        try
+        {
+            classPath.close();
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not close the class path", e);
+        }
     }
 
-    public void startLevelChanging(int oldStartLevel, int newStartLevel)
+    /**
+     * Stops the bundles of a start level that is about to be left.
+     *
+     * @param oldStartLevel the start level that is being left.
+     * @param newStartLevel the start level that will be entered.
+     * @return the number of bundles that were stopped.
+     */
+    public int startLevelChanging(int oldStartLevel, int newStartLevel)
     {
+        var bundles = Collections.<BundleImpl>emptyList();
         if (oldStartLevel > newStartLevel)
         {
-            for (BundleImpl bundle : getBundlesByStartLevel(oldStartLevel))
+            bundles = getBundlesByStartLevel(oldStartLevel);
+            var parallel = SHUTDOWN_MODE_PARALLEL.equalsIgnoreCase(
+                getConfiguration(SHUTDOWN_MODE, SHUTDOWN_MODE_SEQUENTIAL));
+            long timeout = getConfigurationInt(SHUTDOWN_TIMEOUT, 0);
+            if (parallel || timeout > 0)
+            {
+                stopBundlesWithDeadline(bundles, parallel, timeout);
+            }
+            else
+            {
+                for (BundleImpl bundle : bundles)
+                {
+                    long start = System.nanoTime();
+                    try
+                    {
+                        bundle.stop(STOP_TRANSIENT);
+                    }
+                    catch (Exception t)
+                    {
+                        logger.log(Level.SEVERE, "Error changing start level",
+                            t);
+                    }
+                    shutdownReport.stopped(bundle,
+                        Duration.ofNanos(System.nanoTime() - start));
+                }
+            }
+        }
+        return bundles.size();
+    }
+
+    /**
+     * Stops the specified bundles on the stop executor, waiting at most
+     * {@code timeout} milliseconds for each of them. A bundle that exceeds its
+     * deadline is recorded as timed out together with a thread dump and left
+     * behind.
+     *
+     * @param bundles the bundles to stop.
+     * @param parallel {@code true} to stop all bundles at once, {@code false}
+     * to stop them one after another.
+     * @param timeout the deadline in milliseconds for each bundle, 0 to wait
+     * indefinitely.
+     */
+    private void stopBundlesWithDeadline(
+        List<BundleImpl> bundles,
+        boolean parallel,
+        long timeout)
+    {
+        var executor = getStopExecutor();
+        var pending = new ArrayList<Map.Entry<BundleImpl, Future<?>>>();
+        var starts = new HashMap<BundleImpl, Long>();
+        for (BundleImpl bundle : bundles)
+        {
+            starts.put(bundle, System.nanoTime());
+            Future<?> future = executor.submit(() ->
             {
                 try
                 {
@@ -516,8 +1658,139 @@ public class FrameworkImpl
                 {
                     logger.log(Level.SEVERE, "Error changing start level", t);
                 }
+            });
+            pending.add(Map.entry(bundle, future));
+            if (!parallel)
+            {
+                awaitStop(bundle, future, starts.get(bundle), timeout);
+                pending.clear();
+            }
+        }
+
+        for (var e : pending)
+        {
+            awaitStop(e.getKey(), e.getValue(), starts.get(e.getKey()),
+                timeout);
+        }
+    }
+
+    private void awaitStop(
+        BundleImpl bundle,
+        Future<?> future,
+        long start,
+        long timeout)
+    {
+        try
+        {
+            if (timeout > 0)
+            {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(timeout)
+                    - (System.nanoTime() - start);
+                future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+            }
+            else
+            {
+                future.get();
+            }
+
+            shutdownReport.stopped(bundle,
+                Duration.ofNanos(System.nanoTime() - start));
+        }
+        catch (TimeoutException te)
+        {
+            var threadDump = ShutdownReport.threadDump();
+            logger.warning("Bundle " + bundle.getLocation()
+                + " did not stop within " + timeout + "ms, continuing"
+                + " shutdown. Thread dump:" + System.lineSeparator()
+                + threadDump);
+            shutdownReport.timedOut(bundle,
+                Duration.ofNanos(System.nanoTime() - start), threadDump);
+        }
+        catch (ExecutionException | CancellationException e)
+        {
+            logger.log(Level.SEVERE, "Error changing start level", e);
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized ExecutorService getStopExecutor()
+    {
+        if (stopExecutor == null)
+        {
+            // Unbounded, a hung bundle keeps its thread and must not prevent
+            // the remaining bundles from being stopped.
+            var threadCount = new AtomicInteger();
+            stopExecutor = Executors.newCachedThreadPool(r ->
+            {
+                var t = new Thread(r,
+                    "osgi-stopper-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        return stopExecutor;
+    }
+
+    /**
+     * Gets the persistent storage area of this framework.
+     *
+     * @return the storage area, or {@code null} if
+     * {@link Constants#FRAMEWORK_STORAGE} is not configured.
+     */
+    public FrameworkStorage getStorage()
+    {
+        return storage;
+    }
+
+    /**
+     * Gets the profiler measuring activator calls and start level transitions.
+     *
+     * @return the startup profiler of this framework.
+     */
+    public StartupProfiler getStartupProfiler()
+    {
+        var profiler = startupProfiler;
+        if (profiler == null)
+        {
+            synchronized (this)
+            {
+                profiler = startupProfiler;
+                if (profiler == null)
+                {
+                    // not initialized yet
+                    profiler = new StartupProfiler(getBundles());
+                    startupProfiler = profiler;
+                }
             }
         }
+        return profiler;
+    }
+
+    /**
+     * Gets the timings measured until the framework reported
+     * {@link FrameworkEvent#STARTED}.
+     *
+     * @return the startup report, or {@code null} if the framework has not
+     * started yet.
+     */
+    public StartupReport getStartupReport()
+    {
+        return startupReport;
+    }
+
+    /**
+     * Gets the report of the last framework shutdown, or of the shutdown in
+     * progress.
+     *
+     * @return the stop times and timed out bundles of the shutdown.
+     */
+    public ShutdownReport getShutdownReport()
+    {
+        return shutdownReport;
     }
 
     @Override
@@ -527,9 +1800,12 @@ public class FrameworkImpl
         {
         case RESOLVED:
             eventDispatcher = null;
+            shutdownExecutors();
+            closeClassPath();
             break;
         case STARTING:
             eventDispatcher = new EventDispatcher();
+            stopFuture = new CompletableFuture<>();
             break;
         }
 
@@ -540,19 +1816,66 @@ public class FrameworkImpl
     public void stop(int options)
         throws BundleException
     {
+        stopAsync(options);
+    }
+
+    @Override
+    public void uninstall()
+        throws BundleException
+    {
+        throw new BundleException("The system bundle cannot be uninstalled",
+            BundleException.INVALID_OPERATION);
+    }
+
+    @Override
+    public void update(InputStream input)
+        throws BundleException
+    {
+        throw new BundleException("The system bundle cannot be updated",
+            BundleException.UNSUPPORTED_OPERATION);
+    }
+
+    /**
+     * Stops the framework without blocking the caller by lowering the start
+     * level to 0.
+     *
+     * @param options ignored.
+     * @return a future that completes after {@link FrameworkEvent#STOPPED}
+     * has been fired.
+     */
+    @Override
+    public synchronized CompletableFuture<Void> stopAsync(int options)
+    {
+        var stopFuture = this.stopFuture;
+        int state = getState();
+        if (stopFuture == null || (state != STARTING && state != ACTIVE))
+        {
+            return stopFuture == null
+                ? CompletableFuture.completedFuture(null)
+                : stopFuture.thenApply(event -> null);
+        }
+
         logger.fine("Stopping framework");
+        shutdownReport = new ShutdownReport();
         setState(STOPPING);
-        logger.fine("Waiting for framework stop event");
-        frameworkStartLevel.internalSetStartLevel(0,
-            event ->
+        frameworkStartLevel.internalSetStartLevel(0)
+            .whenComplete((reached, t) ->
             {
-                setState(RESOLVED);
-                fireFrameworkEvent(FrameworkEvent.STOPPED);
-                synchronized (stopEvent)
+                if (storage != null)
+                {
+                    storage.save();
+                }
+                renewSharedClassLoader();
+                synchronized (this)
                 {
-                    stopEvent.notifyAll();
+                    startFuture = null;
+                    setState(RESOLVED);
                 }
+                fireFrameworkEvent(FrameworkEvent.STOPPED);
+                stopFuture.complete(
+                    new FrameworkEvent(FrameworkEvent.STOPPED, this, null));
             });
+        return stopFuture.thenApply(event -> null);
     }
 
     public void unregisterService(
@@ -596,22 +1919,31 @@ public class FrameworkImpl
     public FrameworkEvent waitForStop(long timeout)
         throws InterruptedException
     {
-        var start = System.nanoTime();
-        var timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
-        synchronized (stopEvent)
+        if (timeout < 0)
         {
-            if (timeout > 0 && (System.nanoTime() - start) > timeoutNanos)
-            {
-                return new FrameworkEvent(FrameworkEvent.WAIT_TIMEDOUT, this,
-                    null);
-            }
+            throw new IllegalArgumentException("timeout");
+        }
 
-            while (getState() != RESOLVED)
-            {
-                stopEvent.wait(timeout);
-            }
+        var stopFuture = this.stopFuture;
+        if (stopFuture == null)
+        {
+            // never initialized
+            return new FrameworkEvent(FrameworkEvent.STOPPED, this, null);
         }
 
-        return new FrameworkEvent(FrameworkEvent.STOPPED, this, null);
+        try
+        {
+            return timeout == 0
+                ? stopFuture.get()
+                : stopFuture.get(timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException te)
+        {
+            return new FrameworkEvent(FrameworkEvent.WAIT_TIMEDOUT, this, null);
+        }
+        catch (ExecutionException e)
+        {
+            return new FrameworkEvent(FrameworkEvent.ERROR, this, e.getCause());
+        }
     }
 }
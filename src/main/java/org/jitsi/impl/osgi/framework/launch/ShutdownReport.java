@@ -0,0 +1,153 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.launch;
+
+import java.lang.management.*;
+import java.time.*;
+import java.util.*;
+import org.osgi.framework.*;
+
+/**
+ * The outcome of a framework shutdown: how long each bundle took to stop and
+ * which bundles did not stop within the configured deadline.
+ */
+public class ShutdownReport
+{
+    private final Map<Bundle, Duration> stopTimes = new LinkedHashMap<>();
+
+    private final Map<Bundle, String> timedOutBundles = new LinkedHashMap<>();
+
+    synchronized void stopped(Bundle bundle, Duration stopTime)
+    {
+        stopTimes.put(bundle, stopTime);
+    }
+
+    synchronized void timedOut(Bundle bundle, Duration stopTime,
+        String threadDump)
+    {
+        stopTimes.put(bundle, stopTime);
+        timedOutBundles.put(bundle, threadDump);
+    }
+
+    /**
+     * Gets the time each bundle took to stop, in the order the bundles were
+     * stopped. For bundles that timed out this is the time until the deadline
+     * was exceeded.
+     *
+     * @return the stop time per bundle.
+     */
+    public synchronized Map<Bundle, Duration> getStopTimes()
+    {
+        return new LinkedHashMap<>(stopTimes);
+    }
+
+    /**
+     * Gets the bundles that did not stop within the configured deadline and
+     * were left behind by the shutdown.
+     *
+     * @return the timed out bundles.
+     */
+    public synchronized Set<Bundle> getTimedOutBundles()
+    {
+        return new LinkedHashSet<>(timedOutBundles.keySet());
+    }
+
+    /**
+     * Gets the thread dump recorded when a bundle exceeded its stop deadline.
+     *
+     * @param bundle the timed out bundle.
+     * @return the thread dump, or {@code null} if the bundle did not time out.
+     */
+    public synchronized String getThreadDump(Bundle bundle)
+    {
+        return timedOutBundles.get(bundle);
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        var sb = new StringBuilder("ShutdownReport[");
+        for (var e : stopTimes.entrySet())
+        {
+            sb.append(System.lineSeparator())
+                .append("  ")
+                .append(e.getKey().getLocation())
+                .append(": ")
+                .append(e.getValue().toMillis())
+                .append("ms");
+            if (timedOutBundles.containsKey(e.getKey()))
+            {
+                sb.append(" (timed out)");
+            }
+        }
+
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Creates a dump of all threads with their full stack traces and held
+     * locks.
+     *
+     * @return the thread dump.
+     */
+    static String threadDump()
+    {
+        var threadDump = new StringBuilder();
+        var threadMXBean = ManagementFactory.getThreadMXBean();
+        for (ThreadInfo threadInfo : threadMXBean.dumpAllThreads(true, true))
+        {
+            threadDump.append('"')
+                .append(threadInfo.getThreadName())
+                .append("\" Id=")
+                .append(threadInfo.getThreadId())
+                .append(' ')
+                .append(threadInfo.getThreadState());
+            if (threadInfo.getLockName() != null)
+            {
+                threadDump.append(" on ").append(threadInfo.getLockName());
+            }
+            if (threadInfo.getLockOwnerName() != null)
+            {
+                threadDump.append(" owned by \"")
+                    .append(threadInfo.getLockOwnerName())
+                    .append('"');
+            }
+            threadDump.append(System.lineSeparator());
+
+            var monitors = threadInfo.getLockedMonitors();
+            var stackTrace = threadInfo.getStackTrace();
+            for (int i = 0; i < stackTrace.length; i++)
+            {
+                threadDump.append("\tat ")
+                    .append(stackTrace[i])
+                    .append(System.lineSeparator());
+                for (MonitorInfo monitor : monitors)
+                {
+                    if (monitor.getLockedStackDepth() == i)
+                    {
+                        threadDump.append("\t- locked ")
+                            .append(monitor)
+                            .append(System.lineSeparator());
+                    }
+                }
+            }
+
+            threadDump.append(System.lineSeparator());
+        }
+
+        return threadDump.toString();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.profiling;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for the {@code start} or {@code stop} of a single
+ * {@link org.osgi.framework.BundleActivator}.
+ */
+@Name("org.jitsi.osgi.Activator")
+@Label("Bundle Activator")
+@Category({"Jitsi", "OSGi"})
+@Description("Start or stop of a bundle activator")
+@StackTrace(false)
+class ActivatorEvent
+    extends Event
+{
+    @Label("Bundle Id")
+    long bundleId;
+
+    @Label("Bundle Location")
+    String location;
+
+    @Label("Activator")
+    String activator;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("CPU Time")
+    @Timespan
+    long cpuTime;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.profiling;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event summarizing the classes defined by the class loader
+ * of a bundle until the framework started.
+ */
+@Name("org.jitsi.osgi.BundleClassLoading")
+@Label("Bundle Class Loading")
+@Category({"Jitsi", "OSGi"})
+@Description("Classes defined by the class loader of a bundle during startup")
+@StackTrace(false)
+class BundleClassLoadingEvent
+    extends Event
+{
+    @Label("Bundle Id")
+    long bundleId;
+
+    @Label("Bundle Location")
+    String location;
+
+    @Label("Defined Classes")
+    long classCount;
+
+    @Label("Class Loading Time")
+    @Timespan
+    long classLoadingTime;
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.profiling;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for a transition of the framework start level.
+ */
+@Name("org.jitsi.osgi.StartLevel")
+@Label("Start Level Transition")
+@Category({"Jitsi", "OSGi"})
+@Description("Change of the framework start level and the bundle starts or"
+    + " stops it caused")
+@StackTrace(false)
+class StartLevelEvent
+    extends Event
+{
+    @Label("Old Start Level")
+    int oldStartLevel;
+
+    @Label("New Start Level")
+    int newStartLevel;
+
+    @Label("Bundles")
+    int bundleCount;
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.profiling;
+
+import java.lang.management.*;
+import java.util.*;
+import jdk.jfr.*;
+import org.jitsi.impl.osgi.framework.*;
+import org.osgi.framework.*;
+
+/**
+ * Measures the wall and CPU time of bundle activators and start level
+ * transitions, emits them as Flight Recorder events and collects them into a
+ * {@link StartupReport}. A profiler covers one startup of the framework: once
+ * the report is created, later activator calls and start level changes are
+ * still emitted as events, but no longer collected.
+ */
+public class StartupProfiler
+{
+    private final long created = System.nanoTime();
+
+    /**
+     * Whether timings are collected, until the report is created. Guarded by
+     * {@link #activatorTimings}.
+     */
+    private boolean recording = true;
+
+    private final List<StartupReport.ActivatorTiming> activatorTimings
+        = new ArrayList<>();
+
+    private final List<StartupReport.StartLevelTiming> startLevelTimings
+        = new ArrayList<>();
+
+    /**
+     * The class loading counters of the class loaders of the bundles that
+     * were installed when this profiler was created, which the report
+     * subtracts to only count this startup. Guarded by
+     * {@link #activatorTimings}, released with the report.
+     */
+    private final Map<BundleClassLoader, long[]> classLoadingBase
+        = new IdentityHashMap<>();
+
+    /**
+     * Creates a profiler for a startup of the framework.
+     *
+     * @param bundles the installed bundles, whose class loaders may have
+     * defined classes during an earlier startup.
+     */
+    public StartupProfiler(Bundle[] bundles)
+    {
+        for (Bundle bundle : bundles)
+        {
+            var classLoader = getClassLoader(bundle);
+            if (classLoader != null)
+            {
+                classLoadingBase.put(classLoader, new long[] {
+                    classLoader.getDefinedClassCount(),
+                    classLoader.getClassDefinitionTime() });
+            }
+        }
+    }
+
+    /**
+     * Starts measuring a call to an activator on the calling thread.
+     *
+     * @return the measurement to pass to {@link #activatorFinished}.
+     */
+    public Measurement beginActivator()
+    {
+        return new Measurement(new ActivatorEvent());
+    }
+
+    /**
+     * Starts measuring a start level transition on the calling thread.
+     *
+     * @return the measurement to pass to {@link #startLevelFinished}.
+     */
+    public Measurement beginStartLevel()
+    {
+        return new Measurement(new StartLevelEvent());
+    }
+
+    /**
+     * Records the start or stop of an activator.
+     *
+     * @param measurement the measurement returned by
+     * {@link #beginActivator()} before the activator was called.
+     * @param bundle the bundle the activator belongs to.
+     * @param activator the class name of the activator.
+     * @param operation the activator method, {@code start} or {@code stop}.
+     * @param succeeded whether the activator method returned normally.
+     */
+    public void activatorFinished(
+        Measurement measurement,
+        Bundle bundle,
+        String activator,
+        String operation,
+        boolean succeeded)
+    {
+        long wallTime = measurement.wallTime();
+        long cpuTime = measurement.cpuTime();
+        var event = (ActivatorEvent) measurement.event;
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.bundleId = bundle.getBundleId();
+            event.location = bundle.getLocation();
+            event.activator = activator;
+            event.operation = operation;
+            event.cpuTime = cpuTime;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+
+        synchronized (activatorTimings)
+        {
+            if (recording)
+            {
+                activatorTimings.add(new StartupReport.ActivatorTiming(
+                    bundle.getBundleId(), bundle.getLocation(), activator,
+                    operation, wallTime, cpuTime, succeeded));
+            }
+        }
+    }
+
+    /**
+     * Records a transition between two start levels.
+     *
+     * @param measurement the measurement returned by
+     * {@link #beginStartLevel()} before the transition started.
+     * @param oldStartLevel the start level before the transition.
+     * @param newStartLevel the start level after the transition.
+     * @param bundleCount the number of bundles started or stopped.
+     */
+    public void startLevelFinished(
+        Measurement measurement,
+        int oldStartLevel,
+        int newStartLevel,
+        int bundleCount)
+    {
+        long wallTime = measurement.wallTime();
+        var event = (StartLevelEvent) measurement.event;
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.oldStartLevel = oldStartLevel;
+            event.newStartLevel = newStartLevel;
+            event.bundleCount = bundleCount;
+            event.commit();
+        }
+
+        synchronized (activatorTimings)
+        {
+            if (recording)
+            {
+                startLevelTimings.add(new StartupReport.StartLevelTiming(
+                    oldStartLevel, newStartLevel, bundleCount, wallTime));
+            }
+        }
+    }
+
+    /**
+     * Creates a report of everything measured so far, including the classes
+     * the bundles' class loaders defined since this profiler was created,
+     * and stops collecting timings.
+     *
+     * @param bundles the installed bundles.
+     * @return the startup report.
+     */
+    public StartupReport createReport(Bundle[] bundles)
+    {
+        Map<BundleClassLoader, long[]> base;
+        synchronized (activatorTimings)
+        {
+            base = new IdentityHashMap<>(classLoadingBase);
+            classLoadingBase.clear();
+        }
+
+        var classLoading = new ArrayList<StartupReport.ClassLoadingTiming>();
+        for (Bundle bundle : bundles)
+        {
+            var classLoader = getClassLoader(bundle);
+            if (classLoader == null)
+            {
+                continue;
+            }
+
+            // a class loader created during this startup starts from zero
+            var counters = base.getOrDefault(classLoader, new long[2]);
+            var timing = new StartupReport.ClassLoadingTiming(
+                bundle.getBundleId(),
+                bundle.getLocation(),
+                classLoader.getDefinedClassCount() - counters[0],
+                classLoader.getClassDefinitionTime() - counters[1]);
+            classLoading.add(timing);
+
+            var event = new BundleClassLoadingEvent();
+            if (event.shouldCommit())
+            {
+                event.bundleId = timing.getBundleId();
+                event.location = timing.getLocation();
+                event.classCount = timing.getClassCount();
+                event.classLoadingTime = timing.getClassLoadingTime();
+                event.commit();
+            }
+        }
+
+        synchronized (activatorTimings)
+        {
+            var report = new StartupReport(
+                System.nanoTime() - created,
+                List.copyOf(activatorTimings),
+                List.copyOf(startLevelTimings),
+                classLoading);
+            recording = false;
+            activatorTimings.clear();
+            startLevelTimings.clear();
+            return report;
+        }
+    }
+
+    private static BundleClassLoader getClassLoader(Bundle bundle)
+    {
+        if (bundle instanceof BundleImpl
+            && ((BundleImpl) bundle).getClassLoader()
+                instanceof BundleClassLoader)
+        {
+            return (BundleClassLoader) ((BundleImpl) bundle).getClassLoader();
+        }
+
+        return null;
+    }
+
+    /**
+     * The start of an operation on a thread, in wall and CPU time, and the
+     * Flight Recorder event describing it.
+     */
+    public static class Measurement
+    {
+        private final Event event;
+
+        private final long wallStart;
+
+        private final long cpuStart;
+
+        private Measurement(Event event)
+        {
+            this.event = event;
+            event.begin();
+            wallStart = System.nanoTime();
+            cpuStart = currentThreadCpuTime();
+        }
+
+        private long wallTime()
+        {
+            return System.nanoTime() - wallStart;
+        }
+
+        private long cpuTime()
+        {
+            long cpuEnd = currentThreadCpuTime();
+            return cpuStart < 0 || cpuEnd < 0 ? 0 : cpuEnd - cpuStart;
+        }
+
+        private static long currentThreadCpuTime()
+        {
+            var threadMXBean = ThreadMXBeanHolder.threadMXBean;
+            return threadMXBean.isCurrentThreadCpuTimeSupported()
+                ? threadMXBean.getCurrentThreadCpuTime()
+                : -1;
+        }
+    }
+
+    /**
+     * Initializes the management API on the first measurement, not when the
+     * framework is created.
+     */
+    private static class ThreadMXBeanHolder
+    {
+        private static final ThreadMXBean threadMXBean
+            = ManagementFactory.getThreadMXBean();
+    }
+}
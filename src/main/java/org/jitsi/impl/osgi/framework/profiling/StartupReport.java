@@ -0,0 +1,149 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.profiling;
+
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+import lombok.*;
+
+/**
+ * The timings measured by the {@link StartupProfiler} until the framework
+ * reported {@link org.osgi.framework.FrameworkEvent#STARTED}. All times are in
+ * nanoseconds.
+ */
+@Value
+public class StartupReport
+{
+    /**
+     * The time from the initialization of the framework until it started.
+     */
+    long startupTime;
+
+    List<ActivatorTiming> activatorTimings;
+
+    List<StartLevelTiming> startLevelTimings;
+
+    List<ClassLoadingTiming> classLoadingTimings;
+
+    /**
+     * Gets the activator calls sorted by descending wall time.
+     *
+     * @return the slowest activator calls first.
+     */
+    public List<ActivatorTiming> getSlowestActivators()
+    {
+        return activatorTimings.stream()
+            .sorted(Comparator.comparingLong(ActivatorTiming::getWallTime)
+                .reversed())
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString()
+    {
+        var nl = System.lineSeparator();
+        var sb = new StringBuilder("Startup took ")
+            .append(Duration.ofNanos(startupTime).toMillis())
+            .append("ms")
+            .append(nl)
+            .append("Start levels:");
+        for (var t : startLevelTimings)
+        {
+            sb.append(nl).append("  ").append(t.getOldStartLevel())
+                .append(" -> ").append(t.getNewStartLevel())
+                .append(": ").append(t.getBundleCount()).append(" bundles, ")
+                .append(Duration.ofNanos(t.getWallTime()).toMillis())
+                .append("ms");
+        }
+
+        sb.append(nl).append("Activators:");
+        for (var t : getSlowestActivators())
+        {
+            sb.append(nl).append("  ").append(t.getActivator())
+                .append('.').append(t.getOperation())
+                .append(" (").append(t.getLocation()).append("): ")
+                .append(Duration.ofNanos(t.getWallTime()).toMillis())
+                .append("ms wall, ")
+                .append(Duration.ofNanos(t.getCpuTime()).toMillis())
+                .append("ms cpu")
+                .append(t.isSucceeded() ? "" : ", failed");
+        }
+
+        sb.append(nl).append("Class loading:");
+        for (var t : classLoadingTimings)
+        {
+            sb.append(nl).append("  ").append(t.getLocation())
+                .append(": ").append(t.getClassCount()).append(" classes, ")
+                .append(Duration.ofNanos(t.getClassLoadingTime()).toMillis())
+                .append("ms");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * The duration of a single activator call.
+     */
+    @Value
+    public static class ActivatorTiming
+    {
+        long bundleId;
+
+        String location;
+
+        String activator;
+
+        String operation;
+
+        long wallTime;
+
+        long cpuTime;
+
+        boolean succeeded;
+    }
+
+    /**
+     * The duration of a start level transition, including the bundle starts
+     * and stops it caused.
+     */
+    @Value
+    public static class StartLevelTiming
+    {
+        int oldStartLevel;
+
+        int newStartLevel;
+
+        int bundleCount;
+
+        long wallTime;
+    }
+
+    /**
+     * The classes defined by the class loader of a bundle.
+     */
+    @Value
+    public static class ClassLoadingTiming
+    {
+        long bundleId;
+
+        String location;
+
+        long classCount;
+
+        long classLoadingTime;
+    }
+}
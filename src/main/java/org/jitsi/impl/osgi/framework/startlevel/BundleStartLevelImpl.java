@@ -28,7 +28,7 @@ public class BundleStartLevelImpl
 {
     private final BundleImpl bundle;
 
-    private int startLevel = 0;
+    private volatile int startLevel = 0;
 
     public BundleStartLevelImpl(BundleImpl bundle)
     {
@@ -66,7 +66,9 @@ public class BundleStartLevelImpl
     @Override
     public boolean isActivationPolicyUsed()
     {
-        throw new UnsupportedOperationException();
+        // the framework always starts bundles with their declared activation
+        // policy when their start level is reached
+        return true;
     }
 
     @Override
@@ -76,13 +78,19 @@ public class BundleStartLevelImpl
     }
 
     @Override
-    public void setStartLevel(int startLevel)
+    public synchronized void setStartLevel(int startLevel)
     {
         if ((startLevel <= 0) || (getBundle().getBundleId() == 0))
         {
             throw new IllegalArgumentException("startLevel");
         }
 
+        int oldStartLevel = this.startLevel;
         this.startLevel = startLevel;
+        if (oldStartLevel != startLevel)
+        {
+            getBundle().getFramework()
+                .bundleStartLevelChanged(bundle, oldStartLevel, startLevel);
+        }
     }
 }
@@ -18,7 +18,9 @@
 package org.jitsi.impl.osgi.framework.startlevel;
 
 import java.util.concurrent.*;
+import java.util.logging.*;
 import org.jitsi.impl.osgi.framework.launch.*;
+import org.jitsi.osgi.framework.*;
 import org.osgi.framework.*;
 import org.osgi.framework.startlevel.*;
 
@@ -26,14 +28,24 @@ import org.osgi.framework.startlevel.*;
  * @author Lyubomir Marinov
  */
 public class FrameworkStartLevelImpl
-    implements FrameworkStartLevel
+    implements AsyncFrameworkStartLevel
 {
+    private static final Logger logger
+        = Logger.getLogger(FrameworkStartLevelImpl.class.getName());
+
     private final FrameworkImpl framework;
 
     private int initialBundleStartLevel = 0;
 
     private int startLevel;
 
+    /**
+     * The last submitted start level change. Changes are chained so that they
+     * are executed one after another in the order they were requested.
+     */
+    private CompletableFuture<?> lastCommand
+        = CompletableFuture.completedFuture(null);
+
     public FrameworkStartLevelImpl(FrameworkImpl framework)
     {
         this.framework = framework;
@@ -63,7 +75,15 @@ public class FrameworkStartLevelImpl
         return startLevel;
     }
 
-    public void internalSetStartLevel(
+    /**
+     * Changes the start level, including to 0 when the framework stops.
+     *
+     * @param startLevel the requested start level.
+     * @param listeners the listeners to notify when the start level has been
+     * reached.
+     * @return a future that completes with the reached start level.
+     */
+    public synchronized CompletableFuture<Integer> internalSetStartLevel(
         int startLevel,
         FrameworkListener... listeners)
     {
@@ -72,7 +92,19 @@ public class FrameworkStartLevelImpl
             throw new IllegalArgumentException("startLevel");
         }
 
-        ForkJoinPool.commonPool().execute(new Command(startLevel, listeners));
+        var command = new Command(startLevel, listeners);
+        var future = lastCommand.handle((r, t) -> null)
+            .thenApplyAsync(v -> command.call(), framework.getExecutor());
+        future.whenComplete((reached, t) ->
+        {
+            if (t != null)
+            {
+                logger.log(Level.SEVERE,
+                    "Error changing start level to " + startLevel, t);
+            }
+        });
+        lastCommand = future;
+        return future;
     }
 
     @Override
@@ -97,8 +129,18 @@ public class FrameworkStartLevelImpl
         internalSetStartLevel(startLevel, listeners);
     }
 
+    @Override
+    public CompletableFuture<Integer> setStartLevelAsync(int startLevel)
+    {
+        if (startLevel == 0)
+        {
+            throw new IllegalArgumentException("startLevel");
+        }
+
+        return internalSetStartLevel(startLevel);
+    }
+
     private class Command
-        implements Runnable
     {
         private final FrameworkListener[] listeners;
 
@@ -110,57 +152,73 @@ public class FrameworkStartLevelImpl
             this.listeners = listeners;
         }
 
-        @Override
-        public void run()
+        /**
+         * Moves the framework to the requested start level. Only the start
+         * levels with bundles installed are visited, and a single
+         * {@link FrameworkEvent#STARTLEVEL_CHANGED} is fired once the requested
+         * start level has been reached.
+         */
+        public int call()
         {
             int startLevel = getStartLevel();
+            var populatedStartLevels = framework.getPopulatedStartLevels();
+            var profiler = framework.getStartupProfiler();
             if (startLevel < this.startLevel)
             {
-                for (int intermediateStartLevel = startLevel + 1;
-                    intermediateStartLevel <= this.startLevel;
-                    intermediateStartLevel++)
+                for (int populatedStartLevel : populatedStartLevels
+                    .subSet(startLevel, false, this.startLevel, true))
                 {
                     int oldStartLevel = getStartLevel();
+                    var measurement = profiler.beginStartLevel();
 
-                    framework.startLevelChanging(
-                        oldStartLevel, intermediateStartLevel
-                    );
-                    synchronized (FrameworkStartLevelImpl.this)
+                    // warm up the next level while this one is started
+                    var nextStartLevel
+                        = populatedStartLevels.higher(populatedStartLevel);
+                    if (nextStartLevel != null
+                        && nextStartLevel <= this.startLevel)
                     {
-                        FrameworkStartLevelImpl.this.startLevel =
-                            intermediateStartLevel;
+                        framework.preloadStartLevel(nextStartLevel);
                     }
-                    framework.startLevelChanged(
-                        oldStartLevel, intermediateStartLevel,
-                        listeners);
+
+                    int bundleCount = framework.startLevelChanging(
+                        oldStartLevel, populatedStartLevel
+                    );
+                    setCurrentStartLevel(populatedStartLevel);
+                    bundleCount += framework.startLevelChanged(
+                        oldStartLevel, populatedStartLevel);
+                    profiler.startLevelFinished(measurement,
+                        oldStartLevel, populatedStartLevel, bundleCount);
                 }
             }
             else if (this.startLevel < startLevel)
             {
-                for (int intermediateStartLevel = startLevel;
-                    intermediateStartLevel > this.startLevel;
-                    intermediateStartLevel--)
+                for (int populatedStartLevel : populatedStartLevels
+                    .subSet(this.startLevel, false, startLevel, true)
+                    .descendingSet())
                 {
-                    int oldStartLevel = getStartLevel();
-                    int newStartLevel = intermediateStartLevel - 1;
-
-                    framework.startLevelChanging(
-                        oldStartLevel, newStartLevel
+                    // the bundles of a level are stopped when leaving it
+                    var measurement = profiler.beginStartLevel();
+                    setCurrentStartLevel(populatedStartLevel);
+                    int bundleCount = framework.startLevelChanging(
+                        populatedStartLevel, populatedStartLevel - 1
                     );
-                    synchronized (FrameworkStartLevelImpl.this)
-                    {
-                        FrameworkStartLevelImpl.this.startLevel = newStartLevel;
-                    }
-                    framework.startLevelChanged(
-                        oldStartLevel, newStartLevel,
-                        listeners);
+                    setCurrentStartLevel(populatedStartLevel - 1);
+                    bundleCount += framework.startLevelChanged(
+                        populatedStartLevel, populatedStartLevel - 1);
+                    profiler.startLevelFinished(measurement,
+                        populatedStartLevel, populatedStartLevel - 1,
+                        bundleCount);
                 }
             }
-            else
-            {
-                framework.startLevelChanging(startLevel, startLevel);
-                framework.startLevelChanged(startLevel, startLevel, listeners);
-            }
+
+            setCurrentStartLevel(this.startLevel);
+            framework.startLevelReached(listeners);
+            return this.startLevel;
         }
     }
+
+    private synchronized void setCurrentStartLevel(int startLevel)
+    {
+        this.startLevel = startLevel;
+    }
 }
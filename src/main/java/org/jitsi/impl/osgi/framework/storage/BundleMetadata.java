@@ -0,0 +1,105 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.storage;
+
+import java.util.*;
+import lombok.*;
+
+/**
+ * The metadata of a bundle location that is expensive to compute and is
+ * therefore kept in the persistent metadata cache of the
+ * {@link FrameworkStorage}. A record is only valid as long as the size and
+ * modification time of the bundle location are unchanged.
+ * <p>
+ * Records are filled in by installing threads and class loaders and written
+ * by {@link FrameworkStorage#save()} on another thread, so the mutable fields
+ * are volatile and hold values that are not modified after they are set.
+ */
+@Getter
+@Setter
+public class BundleMetadata
+{
+    private final String location;
+
+    private final long size;
+
+    private final long lastModified;
+
+    /**
+     * The time the location was first installed as a bundle.
+     */
+    private volatile long installTime;
+
+    /**
+     * The main attributes of the bundle manifest, {@code null} if they have
+     * not been read.
+     */
+    private volatile Map<String, String> headers;
+
+    /**
+     * The platform {@link #nativeLibraries} were selected for.
+     */
+    private volatile String nativePlatform;
+
+    /**
+     * The paths of the {@code Bundle-NativeCode} clauses matching
+     * {@link #nativePlatform}, {@code null} if not computed.
+     */
+    private volatile List<String> nativeLibraries;
+
+    /**
+     * The names of all entries of a jar bundle, {@code null} if not indexed.
+     */
+    private volatile List<String> entries;
+
+    /**
+     * The classes the bundle defined during the last startup, in the order
+     * of their definition, {@code null} if not recorded.
+     */
+    private volatile List<String> classList;
+
+    BundleMetadata(String location, long size, long lastModified)
+    {
+        this.location = location;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Gets the {@link #nativeLibraries} if they were selected for the current
+     * platform.
+     *
+     * @return the native library paths for this platform, or {@code null}.
+     */
+    public List<String> getNativeLibrariesForPlatform()
+    {
+        return FrameworkStorage.PLATFORM.equals(nativePlatform)
+            ? nativeLibraries
+            : null;
+    }
+
+    /**
+     * Sets the native library paths selected for the current platform.
+     *
+     * @param nativeLibraries the selected native library paths.
+     */
+    public void setNativeLibrariesForPlatform(List<String> nativeLibraries)
+    {
+        // the platform is read first, it publishes the matching libraries
+        this.nativeLibraries = nativeLibraries;
+        this.nativePlatform = FrameworkStorage.PLATFORM;
+    }
+}
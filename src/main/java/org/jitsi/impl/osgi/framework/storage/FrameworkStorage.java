@@ -0,0 +1,402 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.storage;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import org.apache.commons.io.*;
+import org.apache.commons.lang3.*;
+
+/**
+ * The persistent storage area of the framework, configured with
+ * {@link org.osgi.framework.Constants#FRAMEWORK_STORAGE}. It holds the data
+ * files of the bundles and a cache of the {@link BundleMetadata} of every
+ * bundle location, so that a warm start reads a single file instead of
+ * opening every bundle.
+ */
+public class FrameworkStorage
+{
+    private static final Logger logger
+        = Logger.getLogger(FrameworkStorage.class.getName());
+
+    /**
+     * Identifies the platform the native library selection was made for.
+     */
+    static final String PLATFORM = SystemUtils.OS_NAME + '/'
+        + SystemUtils.OS_ARCH;
+
+    private static final String METADATA_FILE = "bundle-metadata.cache";
+
+    private static final int MAGIC = 0x4a4f4d43;
+
+    private static final int VERSION = 2;
+
+    private final File root;
+
+    private final Map<String, BundleMetadata> cached
+        = new ConcurrentHashMap<>();
+
+    private final Map<String, BundleMetadata> current
+        = new ConcurrentHashMap<>();
+
+    private volatile boolean dirty;
+
+    /**
+     * Creates the storage area in the specified directory and loads the
+     * metadata cache.
+     *
+     * @param root the storage directory.
+     * @param clean {@code true} to delete the existing content of the storage
+     * area first.
+     */
+    public FrameworkStorage(File root, boolean clean)
+    {
+        this.root = root;
+        if (clean)
+        {
+            try
+            {
+                FileUtils.deleteDirectory(root);
+            }
+            catch (IOException e)
+            {
+                logger.log(Level.WARNING, "Could not clean storage " + root, e);
+            }
+        }
+
+        if (!root.isDirectory() && !root.mkdirs())
+        {
+            logger.warning("Could not create storage " + root);
+        }
+
+        load();
+    }
+
+    /**
+     * Gets the root directory of the storage area.
+     *
+     * @return the storage directory.
+     */
+    public File getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Gets a file in the persistent data area of a bundle.
+     *
+     * @param location the location of the bundle.
+     * @param filename the relative name of the file, or an empty string for
+     * the data area itself.
+     * @return the data file.
+     */
+    public File getDataFile(String location, String filename)
+    {
+        var dataDir = getDataDir(location);
+        if (!dataDir.isDirectory() && !dataDir.mkdirs())
+        {
+            logger.warning("Could not create data area " + dataDir);
+        }
+
+        return filename.isEmpty() ? dataDir : new File(dataDir, filename);
+    }
+
+    private File getDataDir(String location)
+    {
+        // bundle ids depend on the installation order, the location is stable
+        return new File(root, "data" + File.separator
+            + UUID.nameUUIDFromBytes(
+                location.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Gets the metadata of a bundle location. If the cache holds a record
+     * whose size and modification time match the location, it is returned,
+     * otherwise a new, empty record is created. Locations that are not local
+     * files are never served from the cache.
+     *
+     * @param location the bundle location.
+     * @return the metadata of the location.
+     */
+    public BundleMetadata getMetadata(String location)
+    {
+        return current.computeIfAbsent(location, key ->
+        {
+            var file = toFile(location);
+            long size = -1;
+            long lastModified = -1;
+            if (file != null)
+            {
+                // the manifest of a directory bundle changes independently
+                // of the directory itself
+                var stat = file.isDirectory()
+                    ? new File(file, "META-INF/MANIFEST.MF")
+                    : file;
+                size = stat.length();
+                lastModified = stat.lastModified();
+            }
+
+            var metadata = cached.get(location);
+            if (metadata != null
+                && metadata.getSize() == size
+                && metadata.getLastModified() == lastModified
+                && lastModified > 0)
+            {
+                return metadata;
+            }
+
+            // a new or changed location counts as installed (or updated) now
+            metadata = new BundleMetadata(location, size, lastModified);
+            metadata.setInstallTime(System.currentTimeMillis());
+            dirty = true;
+            return metadata;
+        });
+    }
+
+    /**
+     * Forgets the metadata of a location, so that the next
+     * {@link #getMetadata(String)} reads it again, e.g. after the bundle has
+     * been updated.
+     *
+     * @param location the bundle location.
+     */
+    public void invalidate(String location)
+    {
+        current.remove(location);
+        cached.remove(location);
+        dirty = true;
+    }
+
+    /**
+     * Removes the metadata and the data area of an uninstalled bundle.
+     *
+     * @param location the location of the bundle.
+     */
+    public void remove(String location)
+    {
+        invalidate(location);
+        try
+        {
+            FileUtils.deleteDirectory(getDataDir(location));
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING,
+                "Could not delete data area of " + location, e);
+        }
+    }
+
+    /**
+     * Marks the cache as modified after a {@link BundleMetadata} record
+     * obtained from {@link #getMetadata(String)} was updated.
+     */
+    public void updated()
+    {
+        dirty = true;
+    }
+
+    /**
+     * Writes the metadata of all locations used since the storage was created
+     * to the cache file, if any of it changed.
+     */
+    public synchronized void save()
+    {
+        if (!dirty && current.size() == cached.size())
+        {
+            return;
+        }
+
+        dirty = false;
+        var file = new File(root, METADATA_FILE);
+        var tmp = new File(root, METADATA_FILE + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(tmp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            var records = new ArrayList<>(current.values());
+            out.writeInt(records.size());
+            for (BundleMetadata metadata : records)
+            {
+                writeString(out, metadata.getLocation());
+                out.writeLong(metadata.getSize());
+                out.writeLong(metadata.getLastModified());
+                out.writeLong(metadata.getInstallTime());
+                var headers = metadata.getHeaders();
+                out.writeInt(headers == null ? -1 : headers.size());
+                if (headers != null)
+                {
+                    for (var e : headers.entrySet())
+                    {
+                        writeString(out, e.getKey());
+                        writeString(out, e.getValue());
+                    }
+                }
+
+                writeString(out, Objects.toString(
+                    metadata.getNativePlatform(), ""));
+                writeStrings(out, metadata.getNativeLibraries());
+                writeStrings(out, metadata.getEntries());
+                writeStrings(out, metadata.getClassList());
+            }
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not write metadata cache", e);
+            return;
+        }
+
+        try
+        {
+            Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not replace metadata cache", e);
+        }
+    }
+
+    private void load()
+    {
+        var file = new File(root, METADATA_FILE);
+        if (!file.isFile())
+        {
+            return;
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                logger.info("Ignoring metadata cache of a different version");
+                return;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                var metadata = new BundleMetadata(
+                    readString(in), in.readLong(), in.readLong());
+                metadata.setInstallTime(in.readLong());
+                int headerCount = in.readInt();
+                if (headerCount >= 0)
+                {
+                    var headers = new LinkedHashMap<String, String>();
+                    for (int h = 0; h < headerCount; h++)
+                    {
+                        headers.put(readString(in), readString(in));
+                    }
+                    metadata.setHeaders(headers);
+                }
+
+                var nativePlatform = readString(in);
+                metadata.setNativePlatform(
+                    nativePlatform.isEmpty() ? null : nativePlatform);
+                metadata.setNativeLibraries(readStrings(in));
+                metadata.setEntries(readStrings(in));
+                metadata.setClassList(readStrings(in));
+                cached.put(metadata.getLocation(), metadata);
+            }
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not read metadata cache", e);
+            cached.clear();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException
+    {
+        // writeUTF is limited to 64k, which long manifest headers exceed
+        var bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in)
+        throws IOException
+    {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> list)
+        throws IOException
+    {
+        out.writeInt(list == null ? -1 : list.size());
+        if (list != null)
+        {
+            for (String s : list)
+            {
+                writeString(out, s);
+            }
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in)
+        throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0)
+        {
+            return null;
+        }
+
+        var list = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            list.add(readString(in));
+        }
+        return list;
+    }
+
+    /**
+     * Converts a bundle location to a local file. A fragment, which
+     * distinguishes several bundles installed from the same file, is ignored.
+     *
+     * @param location the bundle location.
+     * @return the file, or {@code null} if the location is not a local file.
+     */
+    public static File toFile(String location)
+    {
+        try
+        {
+            var uri = new URI(location);
+            if (!"file".equals(uri.getScheme()))
+            {
+                return null;
+            }
+
+            return new File(uri.getRawFragment() == null
+                ? uri
+                : new URI(location.substring(0, location.indexOf('#'))));
+        }
+        catch (URISyntaxException | IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.osgi.framework;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.function.*;
+import org.osgi.framework.*;
+import org.osgi.framework.startlevel.*;
+
+/**
+ * Installs the bundles listed in the activator indexes generated at compile
+ * time for classes annotated with {@link IndexedActivator}, instead of
+ * listing every activator and computing its code source by hand.
+ * <p>
+ * Every activator becomes a bundle of its own, so that activators of the same
+ * jar can have different start levels. Its location is the code source of the
+ * index it is listed in, with the name of the activator as the fragment, e.g.
+ * {@code file:/usr/share/jigasi/jigasi.jar#org.jitsi.jigasi.JigasiActivator}.
+ */
+public final class ActivatorIndex
+{
+    /**
+     * The name of the index resource. Each line lists the binary name of an
+     * activator, followed by {@code ;}-separated {@code key=value} attributes
+     * {@value #START_LEVEL}, {@value #LAZY}, {@value #REQUIRES} and
+     * {@value #PROVIDES}, the latter two with {@code ,}-separated service
+     * names. Lines starting with {@code #} are comments.
+     */
+    public static final String RESOURCE = "META-INF/jitsi-osgi/activators";
+
+    public static final String START_LEVEL = "start-level";
+
+    public static final String LAZY = "lazy";
+
+    public static final String REQUIRES = "requires";
+
+    public static final String PROVIDES = "provides";
+
+    private ActivatorIndex()
+    {
+    }
+
+    /**
+     * Installs and configures a bundle for every activator listed in the
+     * indexes visible to a class loader, in the order of the indexes and
+     * their lines. The bundles still have to be started by the framework.
+     * Every line is validated before any bundle is installed, and an
+     * activator class is only loaded when its bundle is first started.
+     *
+     * @param context the context to install the bundles with.
+     * @param classLoader the class loader to find the indexes and load the
+     * activators with.
+     * @return the installed bundles.
+     * @throws BundleException if an index cannot be read or lists an invalid
+     * activator, in which case no bundle is installed.
+     */
+    public static List<Bundle> installBundles(
+        BundleContext context,
+        ClassLoader classLoader)
+        throws BundleException
+    {
+        Enumeration<URL> indexes;
+        try
+        {
+            indexes = classLoader.getResources(RESOURCE);
+        }
+        catch (IOException e)
+        {
+            throw new BundleException("Could not find activator indexes",
+                BundleException.READ_ERROR, e);
+        }
+
+        // every entry is validated before any bundle is installed
+        var locations = new ArrayList<String>();
+        var entries = new ArrayList<Entry>();
+        while (indexes.hasMoreElements())
+        {
+            var index = indexes.nextElement();
+            var codeSource = getCodeSource(index);
+            for (String line : readLines(index))
+            {
+                var entry = Entry.parse(line, index, classLoader);
+                locations.add(codeSource + '#' + entry.className);
+                entries.add(entry);
+            }
+        }
+
+        var bundles = install(context, locations);
+        for (int i = 0; i < bundles.size(); i++)
+        {
+            entries.get(i).configure(bundles.get(i), classLoader);
+        }
+
+        return bundles;
+    }
+
+    /**
+     * Installs bundles, all at once if the framework is a
+     * {@link BundleInstaller}.
+     */
+    private static List<Bundle> install(
+        BundleContext context,
+        List<String> locations)
+        throws BundleException
+    {
+        var systemBundle = context.getBundle(Constants.SYSTEM_BUNDLE_ID);
+        var installer = systemBundle == null
+            ? null
+            : systemBundle.adapt(BundleInstaller.class);
+        if (installer != null)
+        {
+            return installer.installBundles(locations);
+        }
+
+        var bundles = new ArrayList<Bundle>(locations.size());
+        for (String location : locations)
+        {
+            bundles.add(context.installBundle(location));
+        }
+        return bundles;
+    }
+
+    private static List<String> readLines(URL index)
+        throws BundleException
+    {
+        var lines = new ArrayList<String>();
+        try (var reader = new BufferedReader(new InputStreamReader(
+            index.openStream(), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                {
+                    lines.add(line);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BundleException("Could not read " + index,
+                BundleException.READ_ERROR, e);
+        }
+
+        return lines;
+    }
+
+    /**
+     * Derives the code source location of a jar or directory from the URL of
+     * the index it contains, in the form returned by
+     * {@link java.security.CodeSource#getLocation()}.
+     *
+     * @param index the URL of the index.
+     * @return the location of the jar or directory.
+     */
+    private static String getCodeSource(URL index)
+    {
+        var url = index.toString();
+        if ("jar".equals(index.getProtocol()))
+        {
+            var separator = url.lastIndexOf("!/");
+            return url.substring("jar:".length(), separator);
+        }
+
+        return url.substring(0, url.length() - RESOURCE.length());
+    }
+
+    /**
+     * A validated line of an index.
+     */
+    private static final class Entry
+    {
+        private final String className;
+
+        private Integer startLevel;
+
+        private Boolean lazy;
+
+        private final List<String> requires = new ArrayList<>();
+
+        private final List<String> provides = new ArrayList<>();
+
+        private Entry(String className)
+        {
+            this.className = className;
+        }
+
+        /**
+         * Parses a line of an index, and checks that its activator class
+         * exists without loading it.
+         *
+         * @param line the line.
+         * @param index the index the line is in.
+         * @param classLoader the class loader to load the activator with.
+         * @return the entry.
+         * @throws BundleException if the line is invalid.
+         */
+        private static Entry parse(
+            String line,
+            URL index,
+            ClassLoader classLoader)
+            throws BundleException
+        {
+            var attributes = line.split(";");
+            var entry = new Entry(attributes[0].trim());
+            if (classLoader.getResource(
+                entry.className.replace('.', '/') + ".class") == null)
+            {
+                throw new BundleException("Invalid activator "
+                    + entry.className + " in " + index,
+                    BundleException.ACTIVATOR_ERROR);
+            }
+
+            for (int i = 1; i < attributes.length; i++)
+            {
+                var attribute = attributes[i].split("=", 2);
+                var key = attribute[0].trim();
+                var value = attribute.length == 2 ? attribute[1].trim() : "";
+                switch (key)
+                {
+                case START_LEVEL:
+                    try
+                    {
+                        entry.startLevel = Integer.parseInt(value);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        entry.startLevel = 0;
+                    }
+                    if (entry.startLevel < 1)
+                    {
+                        throw new BundleException("Invalid " + START_LEVEL
+                            + " " + value + " of " + entry.className + " in "
+                            + index, BundleException.MANIFEST_ERROR);
+                    }
+                    break;
+                case LAZY:
+                    entry.lazy = Boolean.parseBoolean(value);
+                    break;
+                case REQUIRES:
+                    for (String service : value.split(","))
+                    {
+                        entry.requires.add(service.trim());
+                    }
+                    break;
+                case PROVIDES:
+                    for (String service : value.split(","))
+                    {
+                        entry.provides.add(service.trim());
+                    }
+                    break;
+                default:
+                    // written by a newer processor, not needed to start
+                    break;
+                }
+            }
+
+            return entry;
+        }
+
+        /**
+         * Configures the bundle of this entry. The activator class is only
+         * loaded when the bundle is first started, unless the framework
+         * does not accept activator suppliers.
+         */
+        private void configure(Bundle bundle, ClassLoader classLoader)
+            throws BundleException
+        {
+            if (startLevel != null)
+            {
+                bundle.adapt(BundleStartLevel.class).setStartLevel(startLevel);
+            }
+
+            var holder = bundle.adapt(BundleActivatorHolder.class);
+            if (lazy != null)
+            {
+                holder.setLazyActivation(lazy);
+            }
+            requires.forEach(holder::addRequiredService);
+            provides.forEach(holder::addProvidedService);
+
+            var activator = new LazyActivator(className, classLoader);
+            try
+            {
+                holder.addBundleActivator(activator);
+            }
+            catch (UnsupportedOperationException e)
+            {
+                holder.addBundleActivator(activator.getActivatorClass());
+            }
+        }
+    }
+
+    /**
+     * Creates the instances of an activator class, which is loaded and its
+     * constructor looked up on first use.
+     */
+    private static final class LazyActivator
+        implements Supplier<BundleActivator>
+    {
+        private final String className;
+
+        private final ClassLoader classLoader;
+
+        private volatile Constructor<? extends BundleActivator> constructor;
+
+        private LazyActivator(String className, ClassLoader classLoader)
+        {
+            this.className = className;
+            this.classLoader = classLoader;
+        }
+
+        private Class<? extends BundleActivator> getActivatorClass()
+            throws BundleException
+        {
+            try
+            {
+                // loaded but not initialized, that is left to the activation
+                return Class.forName(className, false, classLoader)
+                    .asSubclass(BundleActivator.class);
+            }
+            catch (ClassNotFoundException | ClassCastException
+                | LinkageError e)
+            {
+                throw new BundleException("Invalid activator " + className,
+                    BundleException.ACTIVATOR_ERROR, e);
+            }
+        }
+
+        @Override
+        public BundleActivator get()
+        {
+            try
+            {
+                var c = constructor;
+                if (c == null)
+                {
+                    c = getActivatorClass().getConstructor();
+                    constructor = c;
+                }
+                return c.newInstance();
+            }
+            catch (InvocationTargetException e)
+            {
+                if (e.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error)
+                {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(
+                    "Could not create " + className, e.getCause());
+            }
+            catch (BundleException | ReflectiveOperationException e)
+            {
+                throw new IllegalStateException(
+                    "Could not create " + className, e);
+            }
+        }
+    }
+}
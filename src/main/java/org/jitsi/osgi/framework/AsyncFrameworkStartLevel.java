@@ -0,0 +1,36 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.osgi.framework;
+
+import java.util.concurrent.*;
+import org.osgi.framework.startlevel.*;
+
+/**
+ * A {@link FrameworkStartLevel} whose start level changes can be observed
+ * through a future instead of a {@link org.osgi.framework.FrameworkListener}.
+ */
+public interface AsyncFrameworkStartLevel
+    extends FrameworkStartLevel
+{
+    /**
+     * Changes the framework start level without blocking the caller.
+     *
+     * @param startLevel the requested start level.
+     * @return a future that completes with the reached start level once all
+     * bundles of the traversed start levels have been started or stopped.
+     */
+    CompletableFuture<Integer> setStartLevelAsync(int startLevel);
+}
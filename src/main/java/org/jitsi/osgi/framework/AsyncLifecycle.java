@@ -0,0 +1,50 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.osgi.framework;
+
+import java.util.concurrent.*;
+import org.osgi.framework.*;
+
+/**
+ * Non-blocking variants of the {@link Bundle} lifecycle operations, obtained
+ * with {@code bundle.adapt(AsyncLifecycle.class)}. For the system bundle, the
+ * returned futures complete when the framework has reported
+ * {@link FrameworkEvent#STARTED} or {@link FrameworkEvent#STOPPED}. The
+ * transitions, including the activators they call, run on threads of the
+ * framework.
+ */
+public interface AsyncLifecycle
+{
+    /**
+     * Starts the bundle without blocking the caller.
+     *
+     * @param options the options of {@link Bundle#start(int)}.
+     * @return a future that completes when the bundle has started, or
+     * completes exceptionally with the {@link BundleException} thrown by the
+     * start.
+     */
+    CompletableFuture<Void> startAsync(int options);
+
+    /**
+     * Stops the bundle without blocking the caller.
+     *
+     * @param options the options of {@link Bundle#stop(int)}.
+     * @return a future that completes when the bundle has stopped, or
+     * completes exceptionally with the {@link BundleException} thrown by the
+     * stop.
+     */
+    CompletableFuture<Void> stopAsync(int options);
+}
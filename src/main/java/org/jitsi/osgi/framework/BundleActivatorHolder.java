@@ -17,6 +17,7 @@
  */
 package org.jitsi.osgi.framework;
 
+import java.util.function.*;
 import org.osgi.framework.*;
 
 /**
@@ -30,4 +31,72 @@ public interface BundleActivatorHolder
      * @param bundleActivator the Activator to register with this bundle.
      */
     void addBundleActivator(Class<? extends BundleActivator> bundleActivator);
+
+    /**
+     * Registers a factory of {@link BundleActivator} instances with this
+     * instance. A new activator is obtained from the supplier whenever the
+     * bundle is started, without any reflective instantiation.
+     *
+     * @param bundleActivator the supplier of the activator to register with
+     * this bundle.
+     * @throws UnsupportedOperationException if this instance only supports
+     * activator classes, which is the default.
+     */
+    default void addBundleActivator(
+        Supplier<? extends BundleActivator> bundleActivator)
+    {
+        throw new UnsupportedOperationException(
+            "Activator suppliers are not supported");
+    }
+
+    /**
+     * Declares a service that must be registered before the activators of
+     * this bundle are started. Bundles of the same start level are started in
+     * the order implied by their required and provided services.
+     *
+     * @param className the name of the service interface.
+     */
+    void addRequiredService(String className);
+
+    /**
+     * Declares a service that must be registered before the activators of
+     * this bundle are started.
+     *
+     * @param serviceInterface the service interface.
+     * @see #addRequiredService(String)
+     */
+    default void addRequiredService(Class<?> serviceInterface)
+    {
+        addRequiredService(serviceInterface.getName());
+    }
+
+    /**
+     * Declares a service that the activators of this bundle register when
+     * they are started.
+     *
+     * @param className the name of the service interface.
+     */
+    void addProvidedService(String className);
+
+    /**
+     * Declares a service that the activators of this bundle register when
+     * they are started.
+     *
+     * @param serviceInterface the service interface.
+     * @see #addProvidedService(String)
+     */
+    default void addProvidedService(Class<?> serviceInterface)
+    {
+        addProvidedService(serviceInterface.getName());
+    }
+
+    /**
+     * Sets whether the activators of this bundle are only started when one of
+     * its provided services is first looked up, or a class is first loaded
+     * from it, instead of when its start level is reached. This is equivalent
+     * to the {@code Bundle-ActivationPolicy: lazy} manifest header.
+     *
+     * @param lazyActivation {@code true} to activate the bundle lazily.
+     */
+    void setLazyActivation(boolean lazyActivation);
 }
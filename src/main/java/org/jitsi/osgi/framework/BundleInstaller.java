@@ -0,0 +1,61 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.osgi.framework;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.osgi.framework.*;
+
+/**
+ * Installs many bundles at once, obtained with
+ * {@code systemBundle.adapt(BundleInstaller.class)}. The bundles are prepared
+ * in parallel, i.e. their entries are indexed and their class loaders built,
+ * and are then published to the framework together: a lookup sees either all
+ * of them or none. Their manifests are read on first use.
+ */
+public interface BundleInstaller
+{
+    /**
+     * Installs bundles like {@link BundleContext#installBundle(String)},
+     * preparing them in parallel. Either all bundles that were not
+     * yet installed become installed, or none does.
+     *
+     * @param locations the locations of the bundles.
+     * @return the bundles in the order of the locations, including those that
+     * were already installed.
+     * @throws BundleException if a location is {@code null} or a bundle could
+     * not be prepared.
+     */
+    List<Bundle> installBundles(Collection<String> locations)
+        throws BundleException;
+
+    /**
+     * Installs bundles like {@link #installBundles(Collection)}, preparing
+     * them on the specified executor with at most one task per processor,
+     * and in the calling thread.
+     *
+     * @param locations the locations of the bundles.
+     * @param executor the executor to prepare the bundles on.
+     * @return the bundles in the order of the locations, including those that
+     * were already installed.
+     * @throws BundleException if a location is {@code null} or a bundle could
+     * not be prepared.
+     */
+    List<Bundle> installBundles(
+        Collection<String> locations,
+        Executor executor)
+        throws BundleException;
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.osgi.framework;
+
+import java.lang.annotation.*;
+import org.osgi.framework.*;
+
+/**
+ * Marks a {@link BundleActivator} to be listed in the activator index that
+ * the annotation processor
+ * {@code org.jitsi.impl.osgi.framework.index.ActivatorIndexProcessor}
+ * generates at compile time, and from which
+ * {@link ActivatorIndex#installBundles(BundleContext, ClassLoader)} installs
+ * the bundles at startup.
+ * <p>
+ * The annotated class must be public, not abstract, and have a public
+ * no-argument constructor.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface IndexedActivator
+{
+    /**
+     * The start level of the bundle of the activator.
+     *
+     * @return the start level, at least {@code 1}.
+     */
+    int startLevel() default 1;
+
+    /**
+     * The services that must be registered before the activator is started.
+     *
+     * @return the required service interfaces.
+     * @see BundleActivatorHolder#addRequiredService(Class)
+     */
+    Class<?>[] requires() default {};
+
+    /**
+     * The services that the activator registers when it is started.
+     *
+     * @return the provided service interfaces.
+     * @see BundleActivatorHolder#addProvidedService(Class)
+     */
+    Class<?>[] provides() default {};
+
+    /**
+     * Whether the activator is only started on the first lookup of one of
+     * its provided services or the first class loaded from its bundle.
+     *
+     * @return {@code true} to activate the bundle lazily.
+     * @see BundleActivatorHolder#setLazyActivation(boolean)
+     */
+    boolean lazy() default false;
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.jitsi.impl.osgi.framework.launch.*;
+import org.jitsi.osgi.framework.*;
+import org.junit.jupiter.api.*;
+import org.osgi.framework.*;
+import org.osgi.framework.startlevel.*;
+
+public class ActivatorFactoryTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void activatorSupplierTest() throws Exception
+    {
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var bundle = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/ProviderActivator");
+        bundle.adapt(BundleStartLevel.class).setStartLevel(1);
+        var created = new ArrayList<BundleActivator>();
+        bundle.adapt(BundleActivatorHolder.class).addBundleActivator(() ->
+        {
+            var activator = new ProviderActivator();
+            created.add(activator);
+            return activator;
+        });
+
+        // a new instance on every start
+        fw.start();
+        bundle.start();
+        assertNotNull(
+            fw.getBundleContext().getServiceReference(Runnable.class));
+        bundle.stop();
+        bundle.start();
+        assertEquals(2, created.size());
+        assertNotSame(created.get(0), created.get(1));
+        fw.stop();
+        fw.waitForStop(5000);
+
+        // other holders only support activator classes
+        BundleActivatorHolder classesOnly = new BundleActivatorHolder()
+        {
+            @Override
+            public void addBundleActivator(
+                Class<? extends BundleActivator> bundleActivator)
+            {
+            }
+
+            @Override
+            public void addRequiredService(String className)
+            {
+            }
+
+            @Override
+            public void addProvidedService(String className)
+            {
+            }
+
+            @Override
+            public void setLazyActivation(boolean lazyActivation)
+            {
+            }
+        };
+        assertThrows(UnsupportedOperationException.class,
+            () -> classesOnly.addBundleActivator(ProviderActivator::new));
+
+        // the constructor handle is looked up once per class
+        assertSame(ActivatorFactory.getConstructor(ProviderActivator.class),
+            ActivatorFactory.getConstructor(ProviderActivator.class));
+        var first = ActivatorFactory.forClass(ProviderActivator.class);
+        var second = ActivatorFactory.forClass(ProviderActivator.class);
+        assertNotSame(first.create(), second.create());
+        assertEquals(ProviderActivator.class.getName(), first.getName());
+        assertNull(ActivatorFactory.forSupplier(ProviderActivator::new)
+            .getName());
+    }
+}
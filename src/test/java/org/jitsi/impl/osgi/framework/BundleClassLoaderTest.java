@@ -0,0 +1,322 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.jar.*;
+import java.util.logging.*;
+import java.util.zip.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.*;
+import org.junit.jupiter.api.io.*;
+import org.osgi.framework.*;
+
+public class BundleClassLoaderTest
+{
+    @Test
+    public void lazyActivationLockOrderTest() throws Exception
+    {
+        // the trigger takes the transition lock of the bundle, an activator
+        // holding it may load classes, so the class loading lock is released
+        try (var loader = new LockCheckingLoader())
+        {
+            var triggered = new ConcurrentLinkedQueue<String>();
+            var current = new AtomicReference<String>();
+            loader.setLazyActivationTrigger(() ->
+            {
+                var name = current.get();
+                if (!loader.holdsLock(name))
+                {
+                    triggered.add(name);
+                }
+            });
+
+            // the superclass is defined while the lock of the class is held
+            current.set(Bundle2.class.getName());
+            loader.loadClass(current.get());
+            current.set(ProviderActivator.class.getName());
+            loader.loadAndResolve(current.get());
+            current.set(ConsumerActivator.class.getName());
+            Class.forName(current.get(), false, loader);
+            assertEquals(List.of(Bundle2.class.getName(),
+                ProviderActivator.class.getName(),
+                ConsumerActivator.class.getName()), List.copyOf(triggered));
+        }
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void parentClassLookupTest() throws Exception
+    {
+        try (var loader = new BundleClassLoader(getClass().getClassLoader(),
+            null))
+        {
+            assertTrue(loader.isRegisteredAsParallelCapable());
+            assertSame(loader,
+                loader.loadClass(Bundle.class.getName()).getClassLoader());
+            assertSame(ClassLoader.getPlatformClassLoader(),
+                loader.loadClass("java.sql.Connection").getClassLoader());
+
+            // the second miss is answered from the parent class names
+            for (int i = 0; i < 2; i++)
+            {
+                assertThrows(ClassNotFoundException.class,
+                    () -> loader.loadClass("org.jitsi.DoesNotExist"));
+            }
+            assertEquals(1, loader.getDefinedClassCount());
+        }
+
+        // a class on the class path is looked up once to be defined
+        var lookups = new ConcurrentLinkedQueue<String>();
+        var index = new ClassPathIndex(BundleClassLoader.getClassPathUrls())
+        {
+            @Override
+            public Resource getResource(String name)
+            {
+                lookups.add(name);
+                return super.getResource(name);
+            }
+        };
+        try (var loader = new BundleClassLoader(index,
+            getClass().getClassLoader(), null))
+        {
+            assertSame(loader,
+                loader.loadClass(Bundle2.class.getName()).getClassLoader());
+            var name = Bundle2.class.getName().replace('.', '/') + ".class";
+            assertEquals(1, lookups.stream().filter(name::equals).count());
+        }
+    }
+
+    /**
+     * Compares the class loading throughput of a {@link BundleClassLoader},
+     * with and without memory-mapped jars, with that of a plain
+     * {@link URLClassLoader} over the class path. Run with
+     * {@code mvn test -Dtest=BundleClassLoaderTest#classLoadingBenchmark
+     * -Djitsi.osgi.benchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "jitsi.osgi.benchmark", matches = "true")
+    public void classLoadingBenchmark() throws Exception
+    {
+        var urls = BundleClassLoader.getClassPathUrls();
+        var names = new ArrayList<String>();
+        for (var url : urls)
+        {
+            var file = new File(url.toURI());
+            if (!file.isFile())
+            {
+                continue;
+            }
+
+            try (var jar = new JarFile(file))
+            {
+                jar.stream()
+                    .map(ZipEntry::getName)
+                    .filter(n -> n.endsWith(".class") && !n.contains("-"))
+                    .map(n -> n.substring(0, n.length() - 6).replace('/', '.'))
+                    .forEach(names::add);
+            }
+        }
+
+        var logger = Logger.getLogger(getClass().getName());
+        for (int round = 0; round < 3; round++)
+        {
+            try (var stock = new URLClassLoader(urls, null))
+            {
+                logger.info("URLClassLoader: "
+                    + loadAll(stock, names) + " classes/s");
+            }
+
+            try (var indexed = new BundleClassLoader(
+                getClass().getClassLoader(), null))
+            {
+                logger.info("BundleClassLoader: "
+                    + loadAll(indexed, names) + " classes/s");
+            }
+
+            var index = new ClassPathIndex(urls, true);
+            try (var mapped = new BundleClassLoader(index,
+                getClass().getClassLoader(), null))
+            {
+                logger.info("BundleClassLoader (mmap): "
+                    + loadAll(mapped, names) + " classes/s");
+            }
+            index.close();
+        }
+    }
+
+    @Test
+    @Timeout(value = 20)
+    @EnabledOnOs(value = OS.LINUX, architectures = "amd64")
+    public void nativeLibraryTest(@TempDir Path tempDir) throws Exception
+    {
+        var classes = compileNativeLoader(tempDir);
+        Files.createDirectories(classes.resolve("META-INF"));
+        Files.writeString(classes.resolve("META-INF/MANIFEST.MF"),
+            "Manifest-Version: 1.0\nBundle-NativeCode: lib/libfoo.so;"
+                + "lib/libbar.so;lib/libbaz.so;osname=Linux;processor=x86-64\n");
+        Files.createDirectories(classes.resolve("lib"));
+        ElfFileTest.writeElf(classes.resolve("lib/libfoo.so"), "libc.so.6", "libbar.so");
+        ElfFileTest.writeElf(classes.resolve("lib/libbar.so"));
+        Files.writeString(classes.resolve("lib/libbaz.so"), "not a library");
+        assertEquals(List.of("libc.so.6", "libbar.so"),
+            ElfFile.readNeeded(classes.resolve("lib/libfoo.so")));
+        assertEquals(List.of(),
+            ElfFile.readNeeded(classes.resolve("lib/libbar.so")));
+        assertNull(ElfFile.readNeeded(classes.resolve("lib/libbaz.so")));
+
+        var index = new ClassPathIndex(
+            new URL[] { classes.toUri().toURL() });
+        var tasks = new AtomicInteger();
+        Executor executor = task ->
+        {
+            tasks.incrementAndGet();
+            new Thread(task).start();
+        };
+        try (var loader = new BundleClassLoader(index,
+            getClass().getClassLoader(), null, executor))
+        {
+            @SuppressWarnings("unchecked")
+            var nativeLoader = (java.util.function.Function<String, String>)
+                loader.loadClass("org.jitsi.test.NativeLoader")
+                    .getConstructor().newInstance();
+
+            // found and extracted, but not a valid library
+            var results = new ConcurrentLinkedQueue<String>();
+            var threads = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++)
+            {
+                var t = new Thread(() -> results.add(nativeLoader.apply("foo")));
+                threads.add(t);
+                t.start();
+            }
+            for (var t : threads)
+            {
+                t.join();
+            }
+
+            var message = results.peek();
+            assertTrue(message.contains("libfoo.so"), message);
+            assertFalse(message.contains(classes.toString()), message);
+            assertEquals(1, new HashSet<>(results).size());
+
+            // the dependency is extracted with it, the rest in the background
+            var dir = Paths.get(message.substring(0, message.indexOf("libfoo.so")));
+            assertTrue(Files.exists(dir.resolve("libbar.so")));
+            // and loaded first by its absolute path, which this one fails
+            assertTrue(Files.isSameFile(dir.resolve("libbar.so"),
+                dir.resolve("deps/libbar.so")));
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!Files.exists(dir.resolve("libbaz.so")))
+            {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+            assertTrue(nativeLoader.apply("qux")
+                .contains("no qux in java.library.path"));
+            // the cleanup of the new cache and the prefetch
+            assertEquals(2, tasks.get());
+        }
+        index.close();
+    }
+
+    /**
+     * Exposes whether the current thread holds a class loading lock.
+     */
+    private static class LockCheckingLoader
+        extends BundleClassLoader
+    {
+        static
+        {
+            registerAsParallelCapable();
+        }
+
+        private LockCheckingLoader()
+        {
+            super(BundleClassLoaderTest.class.getClassLoader(), null);
+        }
+
+        private boolean holdsLock(String name)
+        {
+            return Thread.holdsLock(getClassLoadingLock(name));
+        }
+
+        private Class<?> loadAndResolve(String name)
+            throws ClassNotFoundException
+        {
+            return loadClass(name, true);
+        }
+    }
+
+    private static long loadAll(ClassLoader loader, List<String> names)
+    {
+        long start = System.nanoTime();
+        for (var name : names)
+        {
+            try
+            {
+                Class.forName(name, false, loader);
+            }
+            catch (ClassNotFoundException | LinkageError e)
+            {
+                // missing optional dependency
+            }
+        }
+
+        return names.size() * 1_000_000_000L
+            / Math.max(1, System.nanoTime() - start);
+    }
+
+    /**
+     * Compiles a class that loads a native library and returns the error
+     * message of the {@link UnsatisfiedLinkError}.
+     *
+     * @param tempDir the directory to compile in.
+     * @return the directory with the compiled class.
+     */
+    private static Path compileNativeLoader(Path tempDir)
+        throws IOException
+    {
+        var source = tempDir.resolve("src/org/jitsi/test/NativeLoader.java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, String.join("\n",
+            "package org.jitsi.test;",
+            "public class NativeLoader",
+            "    implements java.util.function.Function<String, String> {",
+            "    public String apply(String name) {",
+            "        try {",
+            "            System.loadLibrary(name);",
+            "            return null;",
+            "        } catch (UnsatisfiedLinkError e) {",
+            "            return e.getMessage();",
+            "        }",
+            "    }",
+            "}"));
+
+        var classes = Files.createDirectories(tempDir.resolve("classes"));
+        var compiler = javax.tools.ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null,
+            "-d", classes.toString(), source.toString()));
+        return classes;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import java.util.*;
+import org.jitsi.impl.osgi.framework.launch.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import org.osgi.framework.*;
+
+public class BundleHeadersTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void localizedHeadersTest(@TempDir Path tempDir) throws Exception
+    {
+        Files.createDirectories(tempDir.resolve("META-INF"));
+        Files.writeString(tempDir.resolve("META-INF/MANIFEST.MF"),
+            "Manifest-Version: 1.0\nBundle-Version: 0.1\n");
+        var l10n = Files.createDirectories(tempDir.resolve("OSGI-INF/l10n"));
+        Files.writeString(l10n.resolve("bundle.properties"),
+            "name=Default\nvendor=Jitsi\n");
+        Files.writeString(l10n.resolve("bundle_de.properties"),
+            "name=Deutsch\n");
+
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var bundle = fw.getBundleContext()
+            .installBundle(tempDir.toUri().toString());
+
+        // read on first use, not when installed
+        Files.writeString(tempDir.resolve("META-INF/MANIFEST.MF"),
+            "Manifest-Version: 1.0\nBundle-Version: 1.2.3.beta\n"
+                + "Bundle-Name: %name\nBundle-Vendor: %vendor\n");
+        assertEquals(new Version(1, 2, 3, "beta"), bundle.getVersion());
+        assertEquals("%name", bundle.getHeaders("").get("Bundle-Name"));
+        assertEquals("Default", bundle.getHeaders("fr").get("Bundle-Name"));
+
+        var german = bundle.getHeaders("de_AT");
+        assertEquals("Deutsch", german.get("Bundle-Name"));
+        assertEquals("Jitsi", german.get("Bundle-Vendor"));
+        assertSame(german, bundle.getHeaders("de_AT"));
+        assertThrows(UnsupportedOperationException.class,
+            () -> german.put("Bundle-Name", "x"));
+
+        // still readable after uninstall
+        bundle.uninstall();
+        assertEquals(new Version(1, 2, 3, "beta"), bundle.getVersion());
+        assertEquals(tempDir.toUri().toString(),
+            bundle.getHeaders("").get("Location"));
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.jitsi.impl.osgi.framework.launch.*;
+import org.jitsi.osgi.framework.*;
+import org.junit.jupiter.api.*;
+import org.osgi.framework.*;
+import org.osgi.framework.startlevel.*;
+
+public class BundleImplTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void lazyActivationTest() throws Exception
+    {
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        var fw = new FrameworkImpl(options, getClass().getClassLoader());
+        fw.init();
+        var lazy = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/ProviderActivator");
+        lazy.adapt(BundleStartLevel.class).setStartLevel(2);
+        var holder = lazy.adapt(BundleActivatorHolder.class);
+        holder.addBundleActivator(ProviderActivator.class);
+        holder.addProvidedService(Runnable.class);
+        holder.setLazyActivation(true);
+
+        fw.start();
+        assertEquals(Bundle.STARTING, lazy.getState());
+        assertTrue(fw.getStartupReport().getActivatorTimings().isEmpty());
+
+        // the lookup triggers the activator, which registers the service
+        assertNotNull(
+            fw.getBundleContext().getServiceReference(Runnable.class));
+        assertEquals(Bundle.ACTIVE, lazy.getState());
+
+        fw.stop();
+        assertEquals(FrameworkEvent.STOPPED, fw.waitForStop(0).getType());
+        assertEquals(Bundle.RESOLVED, lazy.getState());
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void concurrentStartStopTest() throws Exception
+    {
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var bundle = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/CountingActivator");
+        bundle.adapt(BundleActivatorHolder.class)
+            .addBundleActivator(CountingActivator.class);
+        fw.start();
+
+        var pool = Executors.newFixedThreadPool(8);
+        try
+        {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 200; i++)
+            {
+                boolean start = i % 2 == 0;
+                futures.add(pool.submit(() ->
+                {
+                    if (start)
+                    {
+                        bundle.start();
+                    }
+                    else
+                    {
+                        bundle.stop();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures)
+            {
+                f.get();
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        assertFalse(CountingActivator.OVERLAP.get());
+        assertEquals(bundle.getState() == Bundle.ACTIVE ? 1 : 0,
+            CountingActivator.ACTIVE.get());
+        fw.stop();
+        fw.waitForStop(0);
+        assertEquals(0, CountingActivator.ACTIVE.get());
+    }
+
+    @Test
+    public void activatorRollbackTest() throws Exception
+    {
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var bundle = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/Rollback");
+        var holder = bundle.adapt(BundleActivatorHolder.class);
+        var stopped = new ArrayList<Integer>();
+        for (int i = 0; i < 3; i++)
+        {
+            var index = i;
+            holder.addBundleActivator(() -> new BundleActivator()
+            {
+                @Override
+                public void start(BundleContext context)
+                {
+                    if (index == 2)
+                    {
+                        throw new IllegalStateException("failed");
+                    }
+                }
+
+                @Override
+                public void stop(BundleContext context)
+                {
+                    stopped.add(index);
+                }
+            });
+        }
+
+        // started with its start level, the third activator fails
+        fw.adapt(AsyncLifecycle.class).startAsync(0).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 0), stopped);
+        assertEquals(Bundle.RESOLVED, bundle.getState());
+        fw.stop();
+        fw.waitForStop(5000);
+    }
+
+    @Test
+    @Timeout(value = 30)
+    public void uninstallReleasesClassLoaderTest() throws Exception
+    {
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var bundle = (BundleImpl) fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/Uninstall");
+        bundle.adapt(BundleActivatorHolder.class)
+            .addBundleActivator(ProviderActivator.class);
+        fw.start();
+        assertNotNull(
+            fw.getBundleContext().getServiceReference(Runnable.class));
+
+        var loaders = new ArrayList<WeakReference<ClassLoader>>();
+        loaders.add(loadThroughBundle(bundle));
+        bundle.update();
+        assertEquals(Bundle.ACTIVE, bundle.getState());
+        loaders.add(loadThroughBundle(bundle));
+        assertNotSame(loaders.get(0).get(), loaders.get(1).get());
+
+        bundle.uninstall();
+        assertEquals(Bundle.UNINSTALLED, bundle.getState());
+        assertNull(fw.getBundle(bundle.getBundleId()));
+        assertFalse(Arrays.asList(fw.getBundles()).contains(bundle));
+        assertNull(fw.getBundleContext().getServiceReference(Runnable.class));
+        assertThrows(IllegalStateException.class,
+            () -> bundle.loadClass(Bundle1.class.getName()));
+
+        for (int i = 0; i < 100
+            && loaders.stream().anyMatch(r -> r.get() != null); i++)
+        {
+            System.gc();
+            Thread.sleep(20);
+        }
+        for (var loader : loaders)
+        {
+            assertNull(loader.get());
+        }
+
+        fw.stop();
+        fw.waitForStop(0);
+    }
+
+    public static class CountingActivator
+        implements BundleActivator
+    {
+        private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+        private static final AtomicBoolean OVERLAP = new AtomicBoolean();
+
+        @Override
+        public void start(BundleContext context)
+        {
+            if (ACTIVE.incrementAndGet() != 1)
+            {
+                OVERLAP.set(true);
+            }
+        }
+
+        @Override
+        public void stop(BundleContext context)
+        {
+            if (ACTIVE.decrementAndGet() != 0)
+            {
+                OVERLAP.set(true);
+            }
+        }
+    }
+
+    private static WeakReference<ClassLoader> loadThroughBundle(
+        BundleImpl bundle) throws ClassNotFoundException
+    {
+        assertNotNull(bundle.loadClass(Bundle1.class.getName()));
+        return new WeakReference<>(bundle.getClassLoader());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.jar.*;
+import java.util.zip.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class ClassPathIndexTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void classPathIndexTest(@TempDir Path tempDir) throws Exception
+    {
+        // a.jar only references b.jar through its manifest
+        var manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,
+            "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "b.jar");
+        var a = tempDir.resolve("a.jar").toFile();
+        new JarOutputStream(new FileOutputStream(a), manifest).close();
+        var b = tempDir.resolve("b.jar").toFile();
+        try (var out = new JarOutputStream(new FileOutputStream(b)))
+        {
+            out.putNextEntry(new ZipEntry("org/jitsi/b/resource.txt"));
+            out.write(1);
+            out.closeEntry();
+        }
+
+        var classes = Path.of(getClass().getProtectionDomain()
+            .getCodeSource().getLocation().toURI());
+        var index = new ClassPathIndex(new URL[] {
+            a.toURI().toURL(), classes.toUri().toURL() });
+        var other = new BundleClassLoader(index, getClass().getClassLoader(),
+            null);
+        try (var loader = new BundleClassLoader(index,
+            getClass().getClassLoader(), null))
+        {
+            assertEquals("jar:" + b.toURI() + "!/org/jitsi/b/resource.txt",
+                loader.getResource("org/jitsi/b/resource.txt").toString());
+            assertNull(loader.getResource("org/jitsi/b/missing.txt"));
+            assertNull(loader.getResource("org/jitsi/missing/resource.txt"));
+
+            var c = loader.loadClass(Bundle1.class.getName());
+            assertSame(loader, c.getClassLoader());
+            assertEquals(classes.toUri().toURL(),
+                c.getProtectionDomain().getCodeSource().getLocation());
+            assertNotNull(c.getPackage());
+        }
+
+        // closed with the last class loader, and opened again on demand
+        assertTrue(index.isOpen());
+        other.close();
+        other.close();
+        assertFalse(index.isOpen());
+        assertNotNull(index.getResource("org/jitsi/b/resource.txt"));
+        assertTrue(index.isOpen());
+        index.close();
+        assertFalse(index.isOpen());
+
+        // directories changed or created after the index was built
+        var existing = Files.createDirectories(tempDir.resolve("existing"));
+        var created = tempDir.resolve("created");
+        var probed = new ClassPathIndex(new URL[] {
+            existing.toUri().toURL(),
+            new URL(created.toUri().toURL() + "/"),
+            b.toURI().toURL() });
+        assertNotNull(probed.getResource("org/jitsi/b/resource.txt"));
+        Files.createDirectories(existing.resolve("org/jitsi/added"));
+        Files.writeString(existing.resolve("org/jitsi/added/new.txt"), "1");
+        Files.createDirectories(created.resolve("org/jitsi/b"));
+        Files.writeString(created.resolve("org/jitsi/b/resource.txt"), "2");
+        assertEquals(existing.resolve("org/jitsi/added/new.txt").toUri().toURL(),
+            probed.getResource("org/jitsi/added/new.txt").getUrl());
+        var resources = probed.getResources("org/jitsi/b/resource.txt");
+        assertEquals(2, resources.size());
+        assertEquals(created.resolve("org/jitsi/b/resource.txt").toUri().toURL(),
+            resources.get(0).getUrl());
+        probed.close();
+    }
+}
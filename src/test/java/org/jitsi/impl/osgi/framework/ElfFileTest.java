@@ -0,0 +1,165 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class ElfFileTest
+{
+    @Test
+    public void readNeededTest(@TempDir Path tempDir) throws Exception
+    {
+        var file = tempDir.resolve("libfoo.so");
+        writeElf(file, "libbar.so", "libc.so.6");
+        assertEquals(List.of("libbar.so", "libc.so.6"),
+            ElfFile.readNeeded(file));
+        writeElf(file);
+        assertEquals(List.of(), ElfFile.readNeeded(file));
+
+        // statically linked, without a dynamic segment
+        writeElf(file, "libbar.so");
+        var bytes = Files.readAllBytes(file);
+        bytes[0x38] = 1;
+        Files.write(file, bytes);
+        assertEquals(List.of(), ElfFile.readNeeded(file));
+    }
+
+    @Test
+    public void malformedElfTest(@TempDir Path tempDir) throws Exception
+    {
+        var file = tempDir.resolve("libfoo.so");
+        writeElf(file, "libbar.so");
+        var valid = Files.readAllBytes(file);
+
+        Files.write(file, new byte[0]);
+        assertNull(ElfFile.readNeeded(file));
+        Files.writeString(file, "#!/bin/sh\necho not a library\n");
+        assertNull(ElfFile.readNeeded(file));
+
+        // truncated in the headers and in the string table
+        for (int length : new int[] { 20, 100, valid.length - 3 })
+        {
+            Files.write(file, Arrays.copyOf(valid, length));
+            assertNull(ElfFile.readNeeded(file), "length " + length);
+        }
+
+        // unknown class and byte order
+        assertNull(readModified(file, valid, elf -> elf.put(4, (byte) 3)));
+        assertNull(readModified(file, valid, elf -> elf.put(5, (byte) 0)));
+
+        // program headers out of range, also beyond an int
+        assertNull(readModified(file, valid,
+            elf -> elf.putLong(0x20, valid.length)));
+        assertNull(readModified(file, valid,
+            elf -> elf.putLong(0x20, Long.MAX_VALUE)));
+        assertNull(readModified(file, valid,
+            elf -> elf.putLong(0x20, -1)));
+
+        // a dynamic segment past the end of the file
+        assertNull(readModified(file, valid,
+            elf -> elf.putLong(64 + 56 + 8, 1L << 40)));
+
+        // a needed library name beyond the string table
+        assertNull(readModified(file, valid,
+            elf -> elf.putLong(64 + 2 * 56 + 8, 1 << 20)));
+
+        // no string table to read a needed library name from
+        assertNull(readModified(file, valid,
+            elf -> elf.putLong(64 + 2 * 56 + 16, 0)));
+    }
+
+    private static List<String> readModified(
+        Path file,
+        byte[] valid,
+        Consumer<ByteBuffer> modification)
+        throws IOException
+    {
+        var elf = ByteBuffer.wrap(valid.clone())
+            .order(ByteOrder.LITTLE_ENDIAN);
+        modification.accept(elf);
+        Files.write(file, elf.array());
+        return ElfFile.readNeeded(file);
+    }
+
+    /**
+     * Writes a minimal 64-bit little-endian ELF file with a dynamic segment
+     * that only lists the needed libraries, and a machine that no dynamic
+     * linker accepts.
+     *
+     * @param file the file to write.
+     * @param needed the names of the needed libraries.
+     */
+    static void writeElf(Path file, String... needed)
+        throws IOException
+    {
+        var strings = new ByteArrayOutputStream();
+        strings.write(0);
+        var offsets = new ArrayList<Integer>();
+        for (String name : needed)
+        {
+            offsets.add(strings.size());
+            strings.write(name.getBytes(StandardCharsets.UTF_8));
+            strings.write(0);
+        }
+
+        int phoff = 64;
+        int dynamic = phoff + 2 * 56;
+        int dynamicSize = (needed.length + 2) * 16;
+        int strtab = dynamic + dynamicSize;
+        int size = strtab + strings.size();
+        var elf = ByteBuffer.allocate(size)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        elf.putInt(0, 0x464c457f)
+            .put(4, (byte) 2)
+            .put(5, (byte) 1)
+            .put(6, (byte) 1)
+            .putShort(0x10, (short) 3)
+            .putInt(0x14, 1)
+            .putLong(0x20, phoff)
+            .putShort(0x34, (short) 64)
+            .putShort(0x36, (short) 56)
+            .putShort(0x38, (short) 2);
+        // PT_LOAD of the whole file at address 0
+        elf.putInt(phoff, 1)
+            .putLong(phoff + 32, size)
+            .putLong(phoff + 40, size);
+        // PT_DYNAMIC
+        elf.putInt(phoff + 56, 2)
+            .putLong(phoff + 56 + 8, dynamic)
+            .putLong(phoff + 56 + 16, dynamic)
+            .putLong(phoff + 56 + 32, dynamicSize)
+            .putLong(phoff + 56 + 40, dynamicSize);
+        int entry = dynamic;
+        for (int offset : offsets)
+        {
+            elf.putLong(entry, 1).putLong(entry + 8, offset);
+            entry += 16;
+        }
+        elf.putLong(entry, 5).putLong(entry + 8, strtab);
+        elf.position(strtab);
+        elf.put(strings.toByteArray());
+        Files.write(file, elf.array());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.zip.*;
+import org.jitsi.impl.osgi.framework.launch.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class EntryIndexTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void jarEntryIndexTest(@TempDir Path tempDir) throws Exception
+    {
+        var jar = tempDir.resolve("entries.jar").toFile();
+        var manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,
+            "1.0");
+        try (var out = new JarOutputStream(new FileOutputStream(jar), manifest))
+        {
+            for (var name : List.of("org/jitsi/test/resource.txt",
+                "org/jitsi/test/sub/other.txt", "org/jitsi/test/Some.class",
+                "odd/a #1%2?.txt"))
+            {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(1);
+                out.closeEntry();
+            }
+        }
+
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var bundle = fw.getBundleContext()
+            .installBundle(jar.toURI().toString());
+
+        var entry = bundle.getEntry("/org/jitsi/test/resource.txt");
+        assertEquals("jar:" + jar.toURI() + "!/org/jitsi/test/resource.txt",
+            entry.toString());
+        try (var in = entry.openStream())
+        {
+            assertEquals(1, in.read());
+        }
+        assertNull(bundle.getEntry("org/jitsi/missing.txt"));
+        assertEquals(entry, bundle.getResource("org/jitsi/test/resource.txt"));
+
+        assertEquals(List.of("org/jitsi/test/resource.txt",
+                "org/jitsi/test/sub/", "org/jitsi/test/Some.class"),
+            Collections.list(bundle.getEntryPaths("org/jitsi/test")));
+        assertEquals(2, Collections.list(
+            bundle.findEntries("org", "*.txt", true)).size());
+        assertEquals(1, Collections.list(
+            bundle.findEntries("org/jitsi/test", "*.txt", false)).size());
+        assertEquals(1, Collections.list(
+            bundle.findEntries("META-INF", "MANIFEST.MF", false)).size());
+
+        // characters with a meaning in URLs are quoted
+        var odd = bundle.getEntry("odd/a #1%2?.txt");
+        assertEquals("jar:" + jar.toURI() + "!/odd/a%20%231%252%3F.txt",
+            odd.toString());
+        try (var in = odd.openStream())
+        {
+            assertEquals(1, in.read());
+        }
+        assertEquals(List.of(odd), Collections.list(
+            bundle.findEntries("odd", "*.txt", false)));
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void directoryEntryIndexTest(@TempDir Path tempDir) throws Exception
+    {
+        var sub = Files.createDirectories(tempDir.resolve("org/jitsi/sub"));
+        Files.createDirectories(tempDir.resolve("META-INF"));
+        Files.writeString(tempDir.resolve("META-INF/MANIFEST.MF"),
+            "Manifest-Version: 1.0\nBundle-SymbolicName: org.jitsi.dir\n");
+        Files.writeString(tempDir.resolve("org/jitsi/a.txt"), "a");
+        Files.writeString(sub.resolve("b.txt"), "b");
+
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var bundle = fw.getBundleContext()
+            .installBundle(tempDir.toUri().toString());
+        assertEquals("org.jitsi.dir", bundle.getSymbolicName());
+        assertEquals(1, Collections.list(
+            bundle.findEntries("org/jitsi", "*.txt", false)).size());
+        assertEquals(2, Collections.list(
+            bundle.findEntries("org/jitsi", "*.txt", true)).size());
+        assertEquals(sub.resolve("b.txt").toUri().toURL(),
+            bundle.getEntry("org/jitsi/sub/b.txt"));
+        var odd = Files.writeString(Files.createDirectories(
+            tempDir.resolve("odd")).resolve("a #1%2?.txt"), "odd");
+        Thread.sleep(1100);
+        assertEquals(odd.toUri().toURL(), bundle.getEntry("odd/a #1%2?.txt"));
+        try (var in = bundle.getEntry("odd/a #1%2?.txt").openStream())
+        {
+            assertEquals("odd", new String(in.readAllBytes()));
+        }
+
+        // picked up once the revalidation interval has passed
+        Files.writeString(sub.resolve("c.txt"), "c");
+        Thread.sleep(1100);
+        assertEquals(3, Collections.list(
+            bundle.findEntries("org/jitsi", "*.txt", true)).size());
+    }
+}
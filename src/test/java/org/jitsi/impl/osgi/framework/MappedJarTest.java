@@ -0,0 +1,211 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.zip.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class MappedJarTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void mappedClassDefinitionTest(@TempDir Path tempDir)
+        throws Exception
+    {
+        var classes = new LinkedHashMap<String, byte[]>();
+        for (var c : List.of(Bundle1.class, Bundle2.class))
+        {
+            var name = c.getName().replace('.', '/') + ".class";
+            try (var in = getClass().getClassLoader().getResourceAsStream(name))
+            {
+                classes.put(name, in.readAllBytes());
+            }
+        }
+
+        // one stored and one deflated entry
+        var jar = tempDir.resolve("classes.jar").toFile();
+        try (var out = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            var stored = true;
+            for (var e : classes.entrySet())
+            {
+                var entry = new ZipEntry(e.getKey());
+                if (stored)
+                {
+                    var crc = new CRC32();
+                    crc.update(e.getValue());
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(e.getValue().length);
+                    entry.setCrc(crc.getValue());
+                    stored = false;
+                }
+                out.putNextEntry(entry);
+                out.write(e.getValue());
+                out.closeEntry();
+            }
+        }
+
+        var mapped = MappedJar.open(jar);
+        for (var e : classes.entrySet())
+        {
+            var buffer = mapped.getClass(e.getKey());
+            var bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            assertArrayEquals(e.getValue(), bytes);
+        }
+        assertNull(mapped.getClass("org/jitsi/Missing.class"));
+
+        var index = new ClassPathIndex(new URL[] { jar.toURI().toURL() },
+            true);
+        try (var loader = new BundleClassLoader(index,
+            getClass().getClassLoader(), null))
+        {
+            for (var c : List.of(Bundle1.class, Bundle2.class))
+            {
+                var defined = loader.loadClass(c.getName());
+                assertSame(loader, defined.getClassLoader());
+                assertEquals(jar.toURI().toURL(), defined.getProtectionDomain()
+                    .getCodeSource().getLocation());
+            }
+        }
+        index.close();
+    }
+
+    @Test
+    public void unmappableJarTest(@TempDir Path tempDir) throws Exception
+    {
+        var empty = Files.createFile(tempDir.resolve("empty.jar")).toFile();
+        assertNull(MappedJar.open(empty));
+        var text = Files.writeString(tempDir.resolve("text.jar"), "text");
+        assertNull(MappedJar.open(text.toFile()));
+
+        // an end record pointing past the central directory
+        var jar = tempDir.resolve("broken.jar");
+        try (var out = new JarOutputStream(Files.newOutputStream(jar)))
+        {
+            out.putNextEntry(new ZipEntry("org/jitsi/Some.class"));
+            out.write(1);
+            out.closeEntry();
+        }
+        var bytes = Files.readAllBytes(jar);
+        bytes[bytes.length - 6] = (byte) 0xf0;
+        Files.write(jar, bytes);
+        assertThrows(ZipException.class, () -> MappedJar.open(jar.toFile()));
+    }
+
+    @Test
+    @Timeout(value = 60)
+    public void signedJarTest(@TempDir Path tempDir) throws Exception
+    {
+        var unsigned = tempDir.resolve("unsigned.jar");
+        try (var out = new JarOutputStream(Files.newOutputStream(unsigned),
+            new Manifest()))
+        {
+            putClass(out, Bundle1.class.getName().replace('.', '/')
+                + ".class", Bundle1.class);
+        }
+
+        var keyStore = tempDir.resolve("keystore.p12").toString();
+        run("keytool", "-genkeypair", "-alias", "test", "-keyalg", "EC",
+            "-dname", "CN=test", "-validity", "1", "-keystore", keyStore,
+            "-storepass", "changeit", "-keypass", "changeit");
+        var signed = tempDir.resolve("signed.jar");
+        run("jarsigner", "-keystore", keyStore, "-storepass", "changeit",
+            "-signedjar", signed.toString(), unsigned.toString(), "test");
+
+        // signed jars are read through the JarFile to verify the classes
+        var index = new ClassPathIndex(new URL[] { signed.toUri().toURL() },
+            true);
+        var name = Bundle1.class.getName().replace('.', '/') + ".class";
+        assertNull(index.getResource(name).getByteBuffer());
+        try (var loader = new BundleClassLoader(index,
+            getClass().getClassLoader(), null))
+        {
+            var defined = loader.loadClass(Bundle1.class.getName());
+            assertSame(loader, defined.getClassLoader());
+            assertNotNull(defined.getProtectionDomain().getCodeSource()
+                .getCodeSigners());
+        }
+        index.close();
+    }
+
+    @Test
+    public void multiReleaseJarTest(@TempDir Path tempDir) throws Exception
+    {
+        var manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,
+            "1.0");
+        manifest.getMainAttributes().putValue("Multi-Release", "true");
+        var name = Bundle1.class.getName().replace('.', '/') + ".class";
+        var jar = tempDir.resolve("multi-release.jar");
+        try (var out = new JarOutputStream(Files.newOutputStream(jar),
+            manifest))
+        {
+            // only the versioned entry is a valid class file
+            out.putNextEntry(new ZipEntry(name));
+            out.write(new byte[] { 1, 2, 3 });
+            out.closeEntry();
+            putClass(out, "META-INF/versions/9/" + name, Bundle1.class);
+        }
+
+        // the mapping only knows the unversioned entries
+        assertNotNull(MappedJar.open(jar.toFile()).getClass(name));
+        var index = new ClassPathIndex(new URL[] { jar.toUri().toURL() },
+            true);
+        assertNull(index.getResource(name).getByteBuffer());
+        try (var loader = new BundleClassLoader(index,
+            getClass().getClassLoader(), null))
+        {
+            var defined = loader.loadClass(Bundle1.class.getName());
+            assertSame(loader, defined.getClassLoader());
+        }
+        index.close();
+    }
+
+    private static void putClass(JarOutputStream out, String name, Class<?> c)
+        throws IOException
+    {
+        var resource = c.getName().replace('.', '/') + ".class";
+        try (var in = c.getClassLoader().getResourceAsStream(resource))
+        {
+            out.putNextEntry(new ZipEntry(name));
+            in.transferTo(out);
+            out.closeEntry();
+        }
+    }
+
+    private static void run(String tool, String... args)
+        throws IOException, InterruptedException
+    {
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", tool)
+            .toString());
+        command.addAll(Arrays.asList(args));
+        var process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .start();
+        var output = new String(process.getInputStream().readAllBytes());
+        assertEquals(0, process.waitFor(), output);
+    }
+}
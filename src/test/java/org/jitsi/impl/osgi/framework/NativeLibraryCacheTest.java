@@ -0,0 +1,82 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class NativeLibraryCacheTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void nativeLibraryCacheTest(@TempDir Path tempDir) throws Exception
+    {
+        var lib = tempDir.resolve("a/libfoo.so");
+        var copy = tempDir.resolve("b/libfoo.so");
+        Files.createDirectories(lib.getParent());
+        Files.createDirectories(copy.getParent());
+        Files.writeString(lib, "not a library");
+        Files.writeString(copy, "not a library");
+
+        var cacheDir = tempDir.resolve("cache");
+        var cleanups = new ArrayList<Runnable>();
+        var cache = NativeLibraryCache.forDirectory(cacheDir, cleanups::add);
+        assertEquals(1, cleanups.size());
+        assertSame(cache, NativeLibraryCache.forDirectory(cacheDir,
+            cleanups::add));
+        assertEquals(1, cleanups.size());
+        var run1 = cache.createRunDirectory();
+        var run2 = cache.createRunDirectory();
+        var linked1 = cache.link(lib.toUri().toURL(), run1, "libfoo.so");
+        var linked2 = cache.link(copy.toUri().toURL(), run2, "libfoo.so");
+        assertEquals("not a library", Files.readString(linked1));
+        assertTrue(Files.isSameFile(linked1, linked2));
+
+        // the same content is stored once, each source remembers its hash
+        var objects = cacheDir.resolve("objects");
+        try (var files = Files.list(objects))
+        {
+            assertEquals(1, files.count());
+        }
+        try (var files = Files.list(cacheDir.resolve("sources")))
+        {
+            assertEquals(2, files.count());
+        }
+
+        // removed by another process, extracted again
+        try (var files = Files.newDirectoryStream(objects))
+        {
+            for (var file : files)
+            {
+                Files.delete(file);
+            }
+        }
+        var run3 = cache.createRunDirectory();
+        assertEquals("not a library", Files.readString(
+            cache.link(lib.toUri().toURL(), run3, "libfoo.so")));
+
+        // only the run directories of processes that are gone are removed
+        var stale = Files.createDirectories(
+            cacheDir.resolve("run-" + Long.MAX_VALUE + "-0"));
+        cache.cleanup();
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(run1));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.launch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.jitsi.impl.osgi.framework.*;
+import org.junit.jupiter.api.*;
+import org.osgi.framework.*;
+
+public class BundleTableTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void bundleLookupTest() throws Exception
+    {
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var context = fw.getBundleContext();
+        var installed = new ArrayList<Bundle>();
+        for (int i = 0; i < 3; i++)
+        {
+            installed.add(context.installBundle("file:/jitsi-osgi-test/" + i));
+        }
+
+        assertSame(installed.get(1),
+            context.installBundle("file:/jitsi-osgi-test/1"));
+        assertSame(installed.get(2),
+            context.getBundle("file:/jitsi-osgi-test/2"));
+        assertSame(fw, context.getBundle(Constants.SYSTEM_BUNDLE_LOCATION));
+        assertSame(installed.get(0),
+            context.getBundle(installed.get(0).getBundleId()));
+
+        var bundles = context.getBundles();
+        assertEquals(4, bundles.length);
+        bundles[1] = null;
+        assertSame(installed.get(0), context.getBundles()[1]);
+
+        installed.get(1).uninstall();
+        assertNull(context.getBundle("file:/jitsi-osgi-test/1"));
+        assertNull(context.getBundle(installed.get(1).getBundleId()));
+        assertEquals(3, context.getBundles().length);
+
+        // a reinstalled location gets a new id and sorts last
+        var reinstalled = context.installBundle("file:/jitsi-osgi-test/1");
+        assertTrue(reinstalled.getBundleId() > installed.get(2).getBundleId());
+        assertEquals(List.of(fw, installed.get(0), installed.get(2), reinstalled),
+            Arrays.asList(context.getBundles()));
+        assertSame(reinstalled, context.getBundle(reinstalled.getBundleId()));
+
+        // the id index grows and shrinks with the installed bundles
+        var many = new ArrayList<Bundle>();
+        for (int i = 0; i < 100; i++)
+        {
+            many.add(context.installBundle("file:/jitsi-osgi-test/many/" + i));
+        }
+        for (int i = 0; i < many.size(); i += 3)
+        {
+            many.get(i).uninstall();
+        }
+        for (int i = 0; i < many.size(); i++)
+        {
+            var id = many.get(i).getBundleId();
+            assertEquals(i % 3 == 0 ? null : many.get(i), context.getBundle(id));
+        }
+        assertNull(context.getBundle(Long.MAX_VALUE));
+        assertNull(context.getBundle(-1));
+        assertEquals(4 + 66, context.getBundles().length);
+    }
+
+    @Test
+    public void bundleTableTest()
+    {
+        var table = new BundleTable();
+        assertTrue(table.list().isEmpty());
+        assertNull(table.get(0));
+
+        // published out of order, ids 1, 9 and 17 share a slot
+        var bundles = new ArrayList<BundleImpl>();
+        for (long id : new long[] { 17, 1, 9, 4 })
+        {
+            bundles.add(new BundleImpl(null, id, "file:/bundle/" + id, null));
+        }
+        table.addAll(bundles.subList(0, 2));
+        table.addAll(bundles.subList(2, 4));
+        assertEquals(List.of(1L, 4L, 9L, 17L), ids(table.list()));
+        for (var bundle : bundles)
+        {
+            assertSame(bundle, table.get(bundle.getBundleId()));
+            assertSame(bundle, table.get(bundle.getLocation()));
+        }
+        assertNull(table.get(25));
+        assertNull(table.get("file:/bundle/25"));
+
+        // the views do not change the table
+        assertThrows(UnsupportedOperationException.class,
+            () -> table.list().clear());
+        var array = table.toArray();
+        array[0] = null;
+        assertNotNull(table.toArray()[0]);
+
+        // removal keeps the slots sharing the removed one reachable
+        assertTrue(table.remove(bundles.get(1)));
+        assertFalse(table.remove(bundles.get(1)));
+        assertNull(table.get(1));
+        assertSame(bundles.get(0), table.get(17));
+        assertSame(bundles.get(2), table.get(9));
+        assertEquals(2, table.removeAll(List.of(bundles.get(0),
+            bundles.get(1), bundles.get(3))));
+        assertEquals(List.of(9L), ids(table.list()));
+    }
+
+    private static List<Long> ids(List<BundleImpl> bundles)
+    {
+        var ids = new ArrayList<Long>();
+        for (var bundle : bundles)
+        {
+            ids.add(bundle.getBundleId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,612 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.launch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.jitsi.impl.osgi.framework.*;
+import org.jitsi.osgi.framework.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import org.osgi.framework.*;
+import org.osgi.framework.launch.*;
+import org.osgi.framework.startlevel.*;
+
+public class FrameworkImplTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void parallelActivationTest() throws Exception
+    {
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        options.put(FrameworkImpl.ACTIVATION_PARALLELISM, "4");
+        Framework fw = new FrameworkImpl(options, getClass().getClassLoader());
+        fw.init();
+        var bundleContext = fw.getBundleContext();
+        var bundles = new ArrayList<Bundle>();
+        for (Class<? extends BundleActivator> activator : List.of(
+            BarrierActivator1.class,
+            BarrierActivator2.class))
+        {
+            var bundle = bundleContext.installBundle(
+                "file:/jitsi-osgi-test/" + activator.getSimpleName());
+            bundle.adapt(BundleStartLevel.class).setStartLevel(2);
+            bundle.adapt(BundleActivatorHolder.class)
+                .addBundleActivator(activator);
+            bundles.add(bundle);
+        }
+
+        var started = new CountDownLatch(bundles.size());
+        bundleContext.addBundleListener(event ->
+        {
+            if (event.getType() == BundleEvent.STARTED)
+            {
+                started.countDown();
+            }
+        });
+
+        // both activators wait for each other, which only succeeds when they
+        // are started concurrently
+        fw.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (var bundle : bundles)
+        {
+            assertEquals(Bundle.ACTIVE, bundle.getState());
+        }
+
+        fw.stop();
+        assertEquals(FrameworkEvent.STOPPED, fw.waitForStop(0).getType());
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void dependencyOrderedActivationTest() throws Exception
+    {
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        var fw = new FrameworkImpl(options, getClass().getClassLoader());
+        fw.init();
+        var bundleContext = fw.getBundleContext();
+
+        // the consumer is installed first, but must be started after the
+        // provider of the service it requires
+        var consumer = bundleContext.installBundle(
+            "file:/jitsi-osgi-test/ConsumerActivator");
+        consumer.adapt(BundleStartLevel.class).setStartLevel(2);
+        var consumerHolder = consumer.adapt(BundleActivatorHolder.class);
+        consumerHolder.addBundleActivator(ConsumerActivator.class);
+        consumerHolder.addRequiredService(Runnable.class);
+
+        var provider = bundleContext.installBundle(
+            "file:/jitsi-osgi-test/ProviderActivator");
+        provider.adapt(BundleStartLevel.class).setStartLevel(2);
+        var providerHolder = provider.adapt(BundleActivatorHolder.class);
+        providerHolder.addBundleActivator(ProviderActivator.class);
+        providerHolder.addProvidedService(Runnable.class);
+
+        var started = new CountDownLatch(2);
+        bundleContext.addBundleListener(event ->
+        {
+            if (event.getType() == BundleEvent.STARTED)
+            {
+                started.countDown();
+            }
+        });
+
+        fw.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(Bundle.ACTIVE, consumer.getState());
+        assertEquals(Bundle.ACTIVE, provider.getState());
+
+        fw.stop();
+        assertEquals(FrameworkEvent.STOPPED, fw.waitForStop(0).getType());
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void emptyStartLevelsAreSkippedTest() throws Exception
+    {
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "100");
+        var fw = new FrameworkImpl(options, getClass().getClassLoader());
+        var startLevelEvents = new AtomicInteger();
+        fw.init(event ->
+        {
+            if (event.getType() == FrameworkEvent.STARTLEVEL_CHANGED)
+            {
+                startLevelEvents.incrementAndGet();
+            }
+        });
+
+        var bundle = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/ProviderActivator");
+        bundle.adapt(BundleStartLevel.class).setStartLevel(50);
+        bundle.adapt(BundleActivatorHolder.class)
+            .addBundleActivator(ProviderActivator.class);
+
+        fw.start();
+        assertEquals(100,
+            fw.adapt(FrameworkStartLevel.class).getStartLevel());
+        assertEquals(Bundle.ACTIVE, bundle.getState());
+        assertEquals(1, startLevelEvents.get());
+
+        var report = fw.getStartupReport();
+        assertEquals(1, report.getActivatorTimings().size());
+        assertEquals(ProviderActivator.class.getName(),
+            report.getActivatorTimings().get(0).getActivator());
+        assertEquals(1, report.getStartLevelTimings().size());
+        assertEquals(50,
+            report.getStartLevelTimings().get(0).getNewStartLevel());
+
+        fw.stop();
+        assertEquals(FrameworkEvent.STOPPED, fw.waitForStop(0).getType());
+        assertEquals(Bundle.RESOLVED, bundle.getState());
+        assertEquals(2, startLevelEvents.get());
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void hungActivatorDoesNotBlockShutdownTest() throws Exception
+    {
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        options.put(FrameworkImpl.SHUTDOWN_MODE,
+            FrameworkImpl.SHUTDOWN_MODE_PARALLEL);
+        options.put(FrameworkImpl.SHUTDOWN_TIMEOUT, "200");
+        var fw = new FrameworkImpl(options, getClass().getClassLoader());
+        fw.init();
+        var hung = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/HungActivator");
+        hung.adapt(BundleStartLevel.class).setStartLevel(2);
+        hung.adapt(BundleActivatorHolder.class)
+            .addBundleActivator(HungActivator.class);
+        var regular = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/ProviderActivator");
+        regular.adapt(BundleStartLevel.class).setStartLevel(2);
+        regular.adapt(BundleActivatorHolder.class)
+            .addBundleActivator(ProviderActivator.class);
+
+        fw.start();
+        try
+        {
+            fw.stop();
+            var fwEvent = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> fw.waitForStop(0));
+            assertEquals(FrameworkEvent.STOPPED, fwEvent.getType());
+
+            var report = fw.getShutdownReport();
+            assertEquals(Set.of(hung), report.getTimedOutBundles());
+            assertNotNull(report.getThreadDump(hung));
+            assertTrue(report.getStopTimes().containsKey(regular));
+            assertEquals(Bundle.RESOLVED, regular.getState());
+        }
+        finally
+        {
+            HungActivator.RELEASE.countDown();
+        }
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void asyncLifecycleTest() throws Exception
+    {
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        var fw = new FrameworkImpl(options, getClass().getClassLoader());
+        fw.init();
+        var bundle = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/ProviderActivator");
+        bundle.adapt(BundleStartLevel.class).setStartLevel(3);
+        bundle.adapt(BundleActivatorHolder.class)
+            .addBundleActivator(ProviderActivator.class);
+
+        fw.adapt(AsyncLifecycle.class).startAsync(0).get(5, TimeUnit.SECONDS);
+        assertEquals(Bundle.ACTIVE, fw.getState());
+        assertEquals(Bundle.INSTALLED, bundle.getState());
+
+        // the timeout is honored while the framework is running
+        assertEquals(FrameworkEvent.WAIT_TIMEDOUT,
+            fw.waitForStop(100).getType());
+
+        assertEquals(3, fw.adapt(AsyncFrameworkStartLevel.class)
+            .setStartLevelAsync(3).get(5, TimeUnit.SECONDS));
+        assertEquals(Bundle.ACTIVE, bundle.getState());
+        assertNotNull(
+            fw.getBundleContext().getServiceReference(Runnable.class));
+
+        bundle.adapt(AsyncLifecycle.class).stopAsync(0)
+            .get(5, TimeUnit.SECONDS);
+        assertEquals(Bundle.RESOLVED, bundle.getState());
+
+        fw.adapt(AsyncLifecycle.class).stopAsync(0).get(5, TimeUnit.SECONDS);
+        assertEquals(Bundle.RESOLVED, fw.getState());
+        assertEquals(FrameworkEvent.STOPPED, fw.waitForStop(100).getType());
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void asyncLifecycleExecutorTest() throws Exception
+    {
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.adapt(AsyncLifecycle.class).startAsync(0).get(5, TimeUnit.SECONDS);
+        var bundle = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/ThreadRecordingActivator");
+        bundle.adapt(BundleActivatorHolder.class)
+            .addBundleActivator(ThreadRecordingActivator.class);
+
+        // activators run on the threads of the framework, not the common pool
+        bundle.adapt(AsyncLifecycle.class).startAsync(0)
+            .get(5, TimeUnit.SECONDS);
+        assertTrue(ThreadRecordingActivator.thread.startsWith("osgi-worker-"),
+            ThreadRecordingActivator.thread);
+        bundle.adapt(AsyncLifecycle.class).stopAsync(0)
+            .get(5, TimeUnit.SECONDS);
+        assertTrue(ThreadRecordingActivator.thread.startsWith("osgi-worker-"),
+            ThreadRecordingActivator.thread);
+
+        fw.adapt(AsyncLifecycle.class).stopAsync(0).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void sharedClassLoaderTest() throws Exception
+    {
+        for (var mode : List.of(FrameworkImpl.CLASS_LOADER_MODE_BUNDLE,
+            FrameworkImpl.CLASS_LOADER_MODE_SHARED))
+        {
+            var options = new HashMap<String, String>();
+            options.put(FrameworkImpl.CLASS_LOADER_MODE, mode);
+            var fw = new FrameworkImpl(options, getClass().getClassLoader());
+            fw.init();
+            var context = fw.getBundleContext();
+            var bundle1 = context.installBundle("file:/jitsi-osgi-test/A");
+            var bundle2 = context.installBundle("file:/jitsi-osgi-test/B");
+            var class1 = bundle1.loadClass(Bundle1.class.getName());
+            var class2 = bundle2.loadClass(Bundle1.class.getName());
+            assertNotSame(((BundleImpl) bundle1).getClassLoader(),
+                ((BundleImpl) bundle2).getClassLoader());
+            assertEquals(mode.equals(FrameworkImpl.CLASS_LOADER_MODE_SHARED),
+                class1 == class2);
+            assertNotNull(((BundleImpl) bundle1).getClassLoader()
+                .getResource("META-INF/services/"
+                    + "org.osgi.framework.launch.FrameworkFactory"));
+
+            // closing the loader of a bundle keeps the shared one open
+            bundle1.uninstall();
+            assertSame(class2, bundle2.loadClass(Bundle1.class.getName()));
+        }
+
+        // the shared class loader cannot trigger or record a bundle
+        var options = new HashMap<String, String>();
+        options.put(FrameworkImpl.CLASS_LOADER_MODE,
+            FrameworkImpl.CLASS_LOADER_MODE_SHARED);
+        var fw = new FrameworkImpl(options, getClass().getClassLoader());
+        fw.init();
+        var lazy = fw.getBundleContext().installBundle(
+            "file:/jitsi-osgi-test/Lazy");
+        lazy.adapt(BundleActivatorHolder.class).setLazyActivation(true);
+        fw.start();
+        var e = assertThrows(BundleException.class,
+            () -> lazy.start(Bundle.START_ACTIVATION_POLICY));
+        assertEquals(BundleException.UNSUPPORTED_OPERATION, e.getType());
+        var shared = ((BundleImpl) lazy).getClassLoader().getParent();
+        var before = lazy.loadClass(Bundle1.class.getName());
+        fw.stop();
+        fw.waitForStop(0);
+
+        // closed with the framework, the classes are defined again
+        assertNotSame(shared, ((BundleImpl) lazy).getClassLoader().getParent());
+        assertNotSame(before, lazy.loadClass(Bundle1.class.getName()));
+
+        options.put(FrameworkImpl.PRELOAD_PARALLELISM, "1");
+        assertThrows(IllegalArgumentException.class,
+            () -> new FrameworkImpl(options, getClass().getClassLoader()));
+    }
+
+    @Test
+    @Timeout(value = 10)
+    public void bulkInstallTest() throws Exception
+    {
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var installer = fw.adapt(BundleInstaller.class);
+        var locations = new ArrayList<String>();
+        for (int i = 0; i < 20; i++)
+        {
+            locations.add("file:/jitsi-osgi-test/" + i);
+        }
+
+        // overlapping batches installed concurrently
+        var first = CompletableFuture.supplyAsync(() -> install(installer,
+            locations.subList(0, 15)));
+        var second = CompletableFuture.supplyAsync(() -> install(installer,
+            locations.subList(5, 20)));
+        var bundles = new ArrayList<>(first.get());
+        var overlap = second.get();
+        assertEquals(bundles.subList(5, 15), overlap.subList(0, 10));
+        bundles.addAll(overlap.subList(10, 15));
+
+        var ids = new HashSet<Long>();
+        for (int i = 0; i < bundles.size(); i++)
+        {
+            assertEquals(locations.get(i), bundles.get(i).getLocation());
+            assertSame(bundles.get(i),
+                fw.getBundleContext().getBundle(locations.get(i)));
+            ids.add(bundles.get(i).getBundleId());
+        }
+        assertEquals(20, ids.size());
+        assertEquals(21, fw.getBundleContext().getBundles().length);
+        assertEquals(bundles, installer.installBundles(locations));
+        assertThrows(BundleException.class,
+            () -> installer.installBundles(Arrays.asList("a", null)));
+        assertNull(fw.getBundleContext().getBundle("a"));
+
+        // immutable collections reject queries for null
+        var immutable = installer.installBundles(List.of("a", "b"));
+        assertEquals("a", immutable.get(0).getLocation());
+        assertEquals("b", immutable.get(1).getLocation());
+
+        // helpers run on the given executor, the caller prepares the rest
+        var tasks = new AtomicInteger();
+        var more = installer.installBundles(List.of("c", "d", "e", "f"),
+            task ->
+            {
+                tasks.incrementAndGet();
+                task.run();
+            });
+        assertEquals(4, more.size());
+        assertEquals(Math.min(4,
+            Runtime.getRuntime().availableProcessors()) - 1, tasks.get());
+
+        // a rejecting executor leaves all the work to the caller
+        var rejected = installer.installBundles(List.of("g", "h"),
+            task ->
+            {
+                throw new RejectedExecutionException();
+            });
+        assertEquals("h", rejected.get(1).getLocation());
+    }
+
+    @Test
+    @Timeout(value = 20)
+    public void concurrentInstallUninstallTest() throws Exception
+    {
+        var fw = new FrameworkImpl(new HashMap<>(),
+            getClass().getClassLoader());
+        fw.init();
+        var installer = fw.adapt(BundleInstaller.class);
+        var pool = Executors.newFixedThreadPool(4);
+        try
+        {
+            var futures = new ArrayList<Future<Bundle>>();
+            for (int t = 0; t < 4; t++)
+            {
+                var kept = "file:/jitsi-osgi-test/kept/" + t;
+                futures.add(pool.submit(() ->
+                {
+                    for (int i = 0; i < 200; i++)
+                    {
+                        // the threads share the locations they churn
+                        var location = "file:/jitsi-osgi-test/churn/" + i % 5;
+                        var bundle = installer.installBundles(List.of(location))
+                            .get(0);
+                        assertEquals(location, bundle.getLocation());
+                        try
+                        {
+                            bundle.uninstall();
+                        }
+                        catch (IllegalStateException e)
+                        {
+                            // uninstalled by another thread
+                        }
+                    }
+                    return installer.installBundles(List.of(kept)).get(0);
+                }));
+            }
+
+            var kept = new ArrayList<Bundle>();
+            for (var future : futures)
+            {
+                kept.add(future.get());
+            }
+
+            var context = fw.getBundleContext();
+            assertEquals(5, context.getBundles().length);
+            for (var bundle : kept)
+            {
+                assertSame(bundle, context.getBundle(bundle.getBundleId()));
+                assertSame(bundle, context.getBundle(bundle.getLocation()));
+            }
+            for (int i = 0; i < 5; i++)
+            {
+                assertNull(
+                    context.getBundle("file:/jitsi-osgi-test/churn/" + i));
+            }
+            assertTrue(fw.getPopulatedStartLevels().size() <= 1);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(value = 20)
+    public void classPreloadingTest(@TempDir Path tempDir) throws Exception
+    {
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_STORAGE,
+            tempDir.resolve("storage").toString());
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        options.put(FrameworkImpl.PRELOAD_PARALLELISM, "1");
+        var first = tempDir.resolve("first");
+        var second = tempDir.resolve("second");
+        for (var dir : List.of(first, second))
+        {
+            // the metadata of a directory is cached by its manifest
+            Files.createDirectories(dir.resolve("META-INF"));
+            Files.writeString(dir.resolve("META-INF/MANIFEST.MF"),
+                "Manifest-Version: 1.0\n");
+        }
+        for (int run = 0; run < 2; run++)
+        {
+            var fw = new FrameworkImpl(options, getClass().getClassLoader());
+            fw.init();
+            var context = fw.getBundleContext();
+            var bundle1 = context.installBundle(first.toUri().toString());
+            var bundle2 = (BundleImpl) context.installBundle(
+                second.toUri().toString());
+            bundle2.adapt(BundleStartLevel.class).setStartLevel(2);
+            bundle2.addBundleActivator(ClassLoadingActivator.class);
+            if (run == 1)
+            {
+                // waits at level 1 for the classes recorded in the first run
+                PreloadWaitingActivator.loader
+                    = (BundleClassLoader) bundle2.getClassLoader();
+                bundle1.adapt(BundleActivatorHolder.class)
+                    .addBundleActivator(PreloadWaitingActivator.class);
+            }
+
+            fw.start();
+            assertEquals(Bundle.ACTIVE, bundle2.getState());
+            fw.stop();
+            assertEquals(FrameworkEvent.STOPPED, fw.waitForStop(0).getType());
+        }
+
+        assertTrue(PreloadWaitingActivator.preloaded);
+    }
+
+    private static final CyclicBarrier ACTIVATION_BARRIER = new CyclicBarrier(2);
+
+    public static class BarrierActivator1
+        implements BundleActivator
+    {
+        @Override
+        public void start(BundleContext context) throws Exception
+        {
+            ACTIVATION_BARRIER.await(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void stop(BundleContext context)
+        {
+        }
+    }
+
+    public static class BarrierActivator2
+        extends BarrierActivator1
+    {
+    }
+
+    public static class HungActivator
+        implements BundleActivator
+    {
+        private static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+        @Override
+        public void start(BundleContext context)
+        {
+        }
+
+        @Override
+        public void stop(BundleContext context) throws InterruptedException
+        {
+            RELEASE.await();
+        }
+    }
+
+    public static class ThreadRecordingActivator
+        implements BundleActivator
+    {
+        private static volatile String thread;
+
+        @Override
+        public void start(BundleContext context)
+        {
+            thread = Thread.currentThread().getName();
+        }
+
+        @Override
+        public void stop(BundleContext context)
+        {
+            thread = Thread.currentThread().getName();
+        }
+    }
+
+    private static List<Bundle> install(
+        BundleInstaller installer,
+        List<String> locations)
+    {
+        try
+        {
+            return installer.installBundles(locations);
+        }
+        catch (BundleException e)
+        {
+            throw new CompletionException(e);
+        }
+    }
+
+    public static class ClassLoadingActivator
+        implements BundleActivator
+    {
+        @Override
+        public void start(BundleContext context)
+            throws ClassNotFoundException
+        {
+            context.getBundle().loadClass(Bundle3.class.getName());
+        }
+
+        @Override
+        public void stop(BundleContext context)
+        {
+        }
+    }
+
+    public static class PreloadWaitingActivator
+        implements BundleActivator
+    {
+        private static volatile BundleClassLoader loader;
+
+        private static volatile boolean preloaded;
+
+        @Override
+        public void start(BundleContext context)
+            throws InterruptedException
+        {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (loader.getDefinedClassCount() == 0
+                && System.nanoTime() < deadline)
+            {
+                Thread.sleep(10);
+            }
+            preloaded = loader.getDefinedClassCount() > 0;
+        }
+
+        @Override
+        public void stop(BundleContext context)
+        {
+        }
+    }
+}
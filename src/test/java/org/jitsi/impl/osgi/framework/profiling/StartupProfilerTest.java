@@ -0,0 +1,112 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.profiling;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.jitsi.impl.osgi.framework.*;
+import org.jitsi.impl.osgi.framework.launch.*;
+import org.jitsi.osgi.framework.*;
+import org.junit.jupiter.api.*;
+import org.osgi.framework.*;
+import org.osgi.framework.startlevel.*;
+
+public class StartupProfilerTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void startupReportTest() throws Exception
+    {
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "3");
+        var fw = new FrameworkImpl(options, getClass().getClassLoader());
+        fw.init();
+        var bundles = new ArrayList<Bundle>();
+        for (int startLevel = 2; startLevel <= 3; startLevel++)
+        {
+            var bundle = fw.getBundleContext().installBundle(
+                "file:/jitsi-osgi-test/Level" + startLevel);
+            bundle.adapt(BundleStartLevel.class).setStartLevel(startLevel);
+            bundle.adapt(BundleActivatorHolder.class)
+                .addBundleActivator(ProviderActivator.class);
+            bundles.add(bundle);
+        }
+
+        // defined during the first startup only
+        var classLoader = ((BundleImpl) bundles.get(0)).getClassLoader();
+        classLoader.loadClass(Bundle2.class.getName());
+
+        StartupReport previous = null;
+        for (int run = 0; run < 2; run++)
+        {
+            // the second run is initialized again after the stop
+            fw.start();
+            var report = fw.getStartupReport();
+            assertNotSame(previous, report);
+
+            var classes = report.getClassLoadingTimings().stream()
+                .filter(t -> t.getBundleId() == bundles.get(0).getBundleId())
+                .findFirst()
+                .orElseThrow();
+            assertEquals(run == 0, classes.getClassCount() > 0);
+            assertEquals(run == 0, classes.getClassLoadingTime() > 0);
+
+            var activators = report.getActivatorTimings();
+            assertEquals(2, activators.size());
+            for (int i = 0; i < activators.size(); i++)
+            {
+                var timing = activators.get(i);
+                assertEquals(bundles.get(i).getBundleId(), timing.getBundleId());
+                assertEquals(bundles.get(i).getLocation(), timing.getLocation());
+                assertEquals(ProviderActivator.class.getName(),
+                    timing.getActivator());
+                assertEquals("start", timing.getOperation());
+                assertTrue(timing.isSucceeded());
+                assertTrue(timing.getWallTime() > 0);
+            }
+
+            var levels = report.getStartLevelTimings();
+            assertEquals(2, levels.size());
+            assertEquals(2, levels.get(0).getNewStartLevel());
+            assertEquals(2, levels.get(1).getOldStartLevel());
+            assertEquals(3, levels.get(1).getNewStartLevel());
+            long levelTime = 0;
+            for (var level : levels)
+            {
+                assertEquals(1, level.getBundleCount());
+                levelTime += level.getWallTime();
+            }
+            assertTrue(report.getStartupTime() >= levelTime);
+            assertTrue(report.toString().contains(bundles.get(1).getLocation()));
+
+            // activations after the startup are not collected
+            var late = fw.getBundleContext().installBundle(
+                "file:/jitsi-osgi-test/Late" + run);
+            late.adapt(BundleActivatorHolder.class)
+                .addBundleActivator(ProviderActivator.class);
+            late.start();
+            assertEquals(Bundle.ACTIVE, late.getState());
+            late.uninstall();
+            assertSame(report, fw.getStartupReport());
+            assertEquals(2, report.getActivatorTimings().size());
+
+            fw.stop();
+            assertEquals(FrameworkEvent.STOPPED, fw.waitForStop(0).getType());
+            previous = report;
+        }
+    }
+}
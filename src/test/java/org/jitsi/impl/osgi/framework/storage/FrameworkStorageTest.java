@@ -0,0 +1,78 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.osgi.framework.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.zip.*;
+import org.jitsi.impl.osgi.framework.launch.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import org.osgi.framework.*;
+
+public class FrameworkStorageTest
+{
+    @Test
+    @Timeout(value = 10)
+    public void storageTest(@TempDir Path tempDir) throws Exception
+    {
+        var jar = tempDir.resolve("bundle.jar").toFile();
+        var manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,
+            "1.0");
+        manifest.getMainAttributes().putValue(Constants.BUNDLE_SYMBOLICNAME,
+            "org.jitsi.test");
+        try (var out = new JarOutputStream(new FileOutputStream(jar), manifest))
+        {
+            out.putNextEntry(new ZipEntry("org/jitsi/test/resource.txt"));
+            out.write(1);
+            out.closeEntry();
+        }
+
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_STORAGE,
+            tempDir.resolve("storage").toString());
+        long lastModified = -1;
+        for (int run = 0; run < 2; run++)
+        {
+            var fw = new FrameworkImpl(options, getClass().getClassLoader());
+            fw.init();
+            var bundle = fw.getBundleContext()
+                .installBundle(jar.toURI().toString());
+            assertEquals("org.jitsi.test", bundle.getSymbolicName());
+            if (run == 0)
+            {
+                lastModified = bundle.getLastModified();
+                Files.writeString(bundle.getDataFile("state").toPath(), "1");
+            }
+            else
+            {
+                // served from the metadata cache of the first run
+                assertEquals(lastModified, bundle.getLastModified());
+                assertEquals("1",
+                    Files.readString(bundle.getDataFile("state").toPath()));
+            }
+
+            fw.start();
+            fw.stop();
+            assertEquals(FrameworkEvent.STOPPED, fw.waitForStop(0).getType());
+        }
+    }
+}
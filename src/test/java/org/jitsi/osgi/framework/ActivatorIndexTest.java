@@ -0,0 +1,163 @@
+/*
+ * Copyright @ 2026 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.osgi.framework;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.jitsi.impl.osgi.framework.launch.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import org.osgi.framework.*;
+import org.osgi.framework.startlevel.*;
+
+public class ActivatorIndexTest
+{
+    @Test
+    @Timeout(value = 30)
+    public void activatorIndexTest(@TempDir Path tempDir) throws Exception
+    {
+        var source = tempDir.resolve("src/org/jitsi/test/IndexedBundle.java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, String.join("\n",
+            "package org.jitsi.test;",
+            "import org.jitsi.osgi.framework.*;",
+            "import org.osgi.framework.*;",
+            "@IndexedActivator(startLevel = 2, provides = Runnable.class)",
+            "public class IndexedBundle implements BundleActivator {",
+            "    public void start(BundleContext context) {",
+            "        Runnable service = () -> {};",
+            "        context.registerService(Runnable.class, service, null);",
+            "    }",
+            "    public void stop(BundleContext context) {}",
+            "}"));
+
+        var classes = tempDir.resolve("classes");
+        Files.createDirectories(classes);
+        var classPath = String.join(File.pathSeparator,
+            Paths.get(IndexedActivator.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI()).toString(),
+            Paths.get(BundleActivator.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI()).toString());
+        var compiler = javax.tools.ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null,
+            "-classpath", classPath,
+            "-processorpath", classPath,
+            "-processor", "org.jitsi.impl.osgi.framework.index"
+                + ".ActivatorIndexProcessor",
+            "-d", classes.toString(),
+            source.toString()));
+        assertEquals(
+            "org.jitsi.test.IndexedBundle;start-level=2;"
+                + "provides=java.lang.Runnable",
+            Files.readAllLines(classes.resolve(ActivatorIndex.RESOURCE))
+                .get(1));
+
+        // not discovered from the class path
+        var undiscovered = Files.createDirectories(tempDir.resolve("plain"));
+        assertEquals(0, compiler.run(null, null, null,
+            "-classpath", classPath,
+            "-d", undiscovered.toString(),
+            source.toString()));
+        assertFalse(Files.exists(undiscovered.resolve(ActivatorIndex.RESOURCE)));
+
+        // reported without the OSGi API instead of failing the processor
+        var noApiSource = tempDir.resolve("src/org/jitsi/test/NoApi.java");
+        Files.writeString(noApiSource, String.join("\n",
+            "package org.jitsi.test;",
+            "@org.jitsi.osgi.framework.IndexedActivator",
+            "public class NoApi {}"));
+        var processorOnly = Paths.get(IndexedActivator.class
+            .getProtectionDomain().getCodeSource().getLocation().toURI())
+            .toString();
+        var errors = new ByteArrayOutputStream();
+        assertNotEquals(0, compiler.run(null, null, errors,
+            "-classpath", processorOnly,
+            "-processorpath", processorOnly,
+            "-processor", "org.jitsi.impl.osgi.framework.index"
+                + ".ActivatorIndexProcessor",
+            "-d", Files.createDirectories(tempDir.resolve("noapi")).toString(),
+            noApiSource.toString()));
+        var output = errors.toString();
+        assertTrue(output.contains("requires org.osgi.framework.BundleActivator"),
+            output);
+        assertFalse(output.contains("NullPointerException"), output);
+
+        var options = new HashMap<String, String>();
+        options.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        var fw = new FrameworkImpl(options, getClass().getClassLoader());
+        fw.init();
+
+        // an invalid entry of any index installs none of them
+        var broken = Files.createDirectories(
+            tempDir.resolve("broken/META-INF/jitsi-osgi"));
+        for (String line : List.of("org.jitsi.test.Missing",
+            "org.jitsi.test.IndexedBundle;start-level=none"))
+        {
+            Files.writeString(broken.resolve("activators"), line + "\n");
+            try (var loader = new java.net.URLClassLoader(
+                new java.net.URL[] { classes.toUri().toURL(),
+                    tempDir.resolve("broken").toUri().toURL() },
+                getClass().getClassLoader()))
+            {
+                assertThrows(BundleException.class,
+                    () -> ActivatorIndex.installBundles(
+                        fw.getBundleContext(), loader));
+                assertEquals(1, fw.getBundleContext().getBundles().length);
+            }
+        }
+
+        var loaded = new ConcurrentLinkedQueue<String>();
+        try (var loader = new java.net.URLClassLoader(
+            new java.net.URL[] { classes.toUri().toURL() },
+            getClass().getClassLoader())
+        {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException
+            {
+                loaded.add(name);
+                return super.loadClass(name, resolve);
+            }
+        })
+        {
+            var bundles = ActivatorIndex.installBundles(
+                fw.getBundleContext(), loader);
+            assertEquals(1, bundles.size());
+            assertEquals(
+                classes.toUri().toURL() + "#org.jitsi.test.IndexedBundle",
+                bundles.get(0).getLocation());
+            assertEquals(2, bundles.get(0).adapt(BundleStartLevel.class)
+                .getStartLevel());
+
+            // the activator class is loaded when the bundle is started
+            assertFalse(loaded.contains("org.jitsi.test.IndexedBundle"));
+            fw.start();
+            assertTrue(loaded.contains("org.jitsi.test.IndexedBundle"));
+            assertEquals(Bundle.ACTIVE, bundles.get(0).getState());
+            assertNotNull(
+                fw.getBundleContext().getServiceReference(Runnable.class));
+        }
+        finally
+        {
+            fw.stop();
+            fw.waitForStop(0);
+        }
+    }
+}